@@ -1,12 +1,27 @@
 package MyTrees;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 /**
  *
  * @author Owen.Griffiths
  */
-// Nodes are immutable
+// Nodes are immutable, except while owned by an AvlTree.Transient edit, i.e. until it makes them persistent
 class Node<T extends Comparable<T>> {
-    public static int height(Node n) {
+    public static int height(Node<?> n) {
         if (n == null) {
             return 0;
         } else {
@@ -19,7 +34,7 @@ class Node<T extends Comparable<T>> {
         return nodeToString(this);
     }
     
-    public static String nodeToString(Node n) {
+    public static String nodeToString(Node<?> n) {
         if (n == null) {
             return " X ";
         } else {
@@ -31,21 +46,26 @@ class Node<T extends Comparable<T>> {
         return s_rebalanceCount;
     }
     
-    public Node remove(T elem) {
+    public Node<T> remove(T elem) {
+        return remove(elem, null);
+    }
+    
+    // As remove(T), but nodes owned by edit are updated in place, rather than copied
+    public Node<T> remove(T elem, Object edit) {
         int comp = m_key.compareTo(elem);
 
-        Node unbalanced;
+        Node<T> unbalanced;
         
         if (comp < 0) {
-            unbalanced = new Node<>(m_key, m_left, m_right.remove(elem));
+            unbalanced = edited(edit, m_key, m_left, m_right.remove(elem, edit));
         } else if (comp > 0) {
-            unbalanced = new Node<>(m_key, m_left.remove(elem), m_right);
+            unbalanced = edited(edit, m_key, m_left.remove(elem, edit), m_right);
         } else {
-            unbalanced = removeRoot();
+            unbalanced = removeRoot(edit);
         }
         
         if (unbalanced != null) {
-            Node balanced = unbalanced.rebalance();
+            Node<T> balanced = unbalanced.rebalance(edit);
             return balanced;
         } else {
             return null;
@@ -57,10 +77,10 @@ class Node<T extends Comparable<T>> {
             return m_key;
         }
         
-        return (T) m_right.findMax();
+        return m_right.findMax();
     }
     
-    private Node removeRoot() {
+    private Node<T> removeRoot(Object edit) {
         // If < 2 children, easy to delete - just promote the single child
         if ((m_left == null) || (m_right == null)) {
             return removeSimple();
@@ -68,15 +88,15 @@ class Node<T extends Comparable<T>> {
         
         // Otherwise, temporarily remove the left's max (this is guarenteed not to have 2 children)
         // Then, can just overwrite this key with left's max
-        T toPromote = (T) m_left.findMax();
-        Node newLeft = m_left.remove(toPromote);
+        T toPromote = m_left.findMax();
+        Node<T> newLeft = m_left.remove(toPromote, edit);
         
-        Node result = new Node(toPromote, newLeft, m_right);
+        Node<T> result = edited(edit, toPromote, newLeft, m_right);
         return result;
     }
     
     // Removes this from the tree, assuming it has 0 or 1 children
-    private Node removeSimple() {
+    private Node<T> removeSimple() {
         assert (m_left == null) || (m_right == null);
         
         if (m_left != null) {
@@ -116,7 +136,7 @@ class Node<T extends Comparable<T>> {
         }
     }
     
-    private Node<T> rebalance() {
+    private Node<T> rebalance(Object edit) {
         if (!needsRebalancing()) {
             return this;
         }
@@ -126,16 +146,16 @@ class Node<T extends Comparable<T>> {
         
         switch (getLongPath()) {
             case RightRight: 
-                result = rotateLeft();
+                result = rotateLeft(edit);
                 break;
             case LeftLeft:
-                result = rotateRight();
+                result = rotateRight(edit);
                 break;
             case RightLeft:
-                result = rotateRightLeft();
+                result = rotateRightLeft(edit);
                 break;
             case LeftRight:
-                result = rotateLeftRight();
+                result = rotateLeftRight(edit);
                 break;
         }
         
@@ -145,30 +165,48 @@ class Node<T extends Comparable<T>> {
         return result;
     }
     
-    private Node<T> rotateLeftRight() {
-        Node<T> intermediate = new Node(m_key, m_left.rotateLeft(), m_right);
-        return intermediate.rotateRight();
+    private Node<T> rotateLeftRight(Object edit) {
+        Node<T> intermediate = edited(edit, m_key, m_left.rotateLeft(edit), m_right);
+        return intermediate.rotateRight(edit);
     }
     
-    private Node<T> rotateRightLeft() {
-        Node<T> intermediate = new Node(m_key, m_left, m_right.rotateRight());
-        return intermediate.rotateLeft();
+    private Node<T> rotateRightLeft(Object edit) {
+        Node<T> intermediate = edited(edit, m_key, m_left, m_right.rotateRight(edit));
+        return intermediate.rotateLeft(edit);
     }
     
-    private Node<T> rotateRight() {
-        Node<T> newThis = new Node<>(m_key, m_left.m_right, m_right);
-        Node<T> newRoot = new Node<T>(m_left.m_key, m_left.m_left, newThis);
+    private Node<T> rotateRight(Object edit) {
+        // Keep hold of the old left, as editing this in place overwrites m_left
+        Node<T> left = m_left;
+        Node<T> newThis = edited(edit, m_key, left.m_right, m_right);
+        Node<T> newRoot = left.edited(edit, left.m_key, left.m_left, newThis);
         
         return newRoot;
     }
     
-    private Node<T> rotateLeft() {
-        Node<T> newThis = new Node<>(m_key, m_left, m_right.m_left);
-        Node<T> newRoot = new Node<T>(m_right.m_key, newThis, m_right.m_right);
+    private Node<T> rotateLeft(Object edit) {
+        Node<T> right = m_right;
+        Node<T> newThis = edited(edit, m_key, m_left, right.m_left);
+        Node<T> newRoot = right.edited(edit, right.m_key, newThis, right.m_right);
         
         return newRoot;
     }
     
+    // A node of key, left and right: this one, updated in place, if owned by edit, otherwise a new one owned by edit
+    // A null edit owns nothing, so always gives a new node, as for the persistent operations
+    private Node<T> edited(Object edit, T key, Node<T> left, Node<T> right) {
+        if ((edit == null) || (m_edit != edit)) {
+            return new Node<>(key, left, right, edit);
+        }
+        
+        m_key = key;
+        m_left = left;
+        m_right = right;
+        m_height = 1 + Math.max(height(left), height(right));
+        m_count = 1 + getCount(left) + getCount(right);
+        return this;
+    }
+    
     private boolean needsRebalancing() {
         int leftHeight = height(m_left);
         int rightHeight = height(m_right);
@@ -183,32 +221,100 @@ class Node<T extends Comparable<T>> {
     // PRE  : !Node.contains(root, elem)
     // POST : Node.contains(root, elem)
     public static <T extends Comparable<T>> Node<T> add(Node<T> root, T elem) {
+        return add(root, elem, null);
+    }
+    
+    // As add(Node, T), but nodes owned by edit are updated in place, rather than copied
+    public static <T extends Comparable<T>> Node<T> add(Node<T> root, T elem, Object edit) {
         if (root == null) {
-            return new Node<>(elem);
+            return new Node<>(elem, edit);
         }
         
         int comp = root.m_key.compareTo(elem);
         assert comp != 0;
 
-        Node intermediate;
+        Node<T> intermediate;
         
         if (comp < 0) {
-            intermediate = new Node<>(root.m_key, root.m_left, Node.add(root.m_right, elem));
+            intermediate = root.edited(edit, root.m_key, root.m_left, Node.add(root.m_right, elem, edit));
         } else { // can't be equal, so root must be greater than elem
-            intermediate = new Node<>(root.m_key, Node.add(root.m_left, elem), root.m_right);
+            intermediate = root.edited(edit, root.m_key, Node.add(root.m_left, elem, edit), root.m_right);
         }
         
-        Node balanced = intermediate.rebalance();
+        Node<T> balanced = intermediate.rebalance(edit);
         
         return balanced;
     }
     
+    // Builds a perfectly balanced tree of sorted[start, end), by taking the middle as the root, in O(n)
+    // PRE  : sorted[start, end) is strictly increasing
+    public static <T extends Comparable<T>> Node<T> fromSorted(T[] sorted, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+        
+        int middle = (start + end) >>> 1;
+        Node<T> left = fromSorted(sorted, start, middle);
+        Node<T> right = fromSorted(sorted, middle + 1, end);
+        return new Node<>(sorted[middle], left, right, null);
+    }
+    
+    // As fromSorted(T[], int, int), taking the next count elements of sorted in order, so the same shape of tree
+    //  is built without first copying the elements into an array
+    // PRE  : sorted has at least count more elements, and they are strictly increasing
+    public static <T extends Comparable<T>> Node<T> fromSorted(Iterator<? extends T> sorted, int count) {
+        if (count == 0) {
+            return null;
+        }
+        
+        int leftCount = count / 2;
+        Node<T> left = fromSorted(sorted, leftCount);
+        T key = sorted.next();
+        Node<T> right = fromSorted(sorted, count - leftCount - 1);
+        return new Node<>(key, left, right, null);
+    }
+    
     public static <T extends Comparable<T>> int getCount(Node<T> root) {
         if (root == null) { 
             return 0;
         }
         
-        return 1 + getCount(root.m_left) + getCount(root.m_right);
+        return root.m_count;
+    }
+    
+    // Number of elements less than elem
+    public static <T extends Comparable<T>> int rank(Node<T> root, T elem) {
+        int result = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int comp = node.m_key.compareTo(elem);
+            if (comp < 0) {
+                result += getCount(node.m_left) + 1;
+                node = node.m_right;
+            } else if (comp > 0) {
+                node = node.m_left;
+            } else {
+                return result + getCount(node.m_left);
+            }
+        }
+        return result;
+    }
+    
+    // The element with index smaller elements
+    // PRE  : 0 <= index < getCount(root)
+    public static <T extends Comparable<T>> T select(Node<T> root, int index) {
+        Node<T> node = root;
+        while (true) {
+            int leftCount = getCount(node.m_left);
+            if (index < leftCount) {
+                node = node.m_left;
+            } else if (index > leftCount) {
+                index -= leftCount + 1;
+                node = node.m_right;
+            } else {
+                return node.m_key;
+            }
+        }
     }
     
     public static <T extends Comparable<T>> boolean contains(Node<T> root, T elem) {
@@ -232,6 +338,9 @@ class Node<T extends Comparable<T>> {
         if (heightDiff > 1) {
             return false;
         }
+        if (m_count != 1 + getCount(m_left) + getCount(m_right)) {
+            return false;
+        }
         if ((m_left != null) && !m_left.isValid()) {
             return false;
         }
@@ -240,9 +349,11 @@ class Node<T extends Comparable<T>> {
     }
 
     // Makes a tree with 1 elem, i.e. key
-    private Node(T key) {
+    private Node(T key, Object edit) {
         m_key = key;
         m_height = 1;
+        m_count = 1;
+        m_edit = edit;
     }
 
     // Make a tree with key at root, and left and right rub trees
@@ -250,38 +361,177 @@ class Node<T extends Comparable<T>> {
     //        (right == null) || (right.getMin() > key)
     // This doesn't need to be a balanced AVL tree, as unbalanced intermediate nodes 
     //  are created before being fixed.
-    private Node(T key, Node left, Node right) {
+    private Node(T key, Node<T> left, Node<T> right, Object edit) {
         m_key = key;
         m_left = left;
         m_right = right;
         m_height = 1 + Math.max(height(left), height(right));
+        m_count = 1 + getCount(left) + getCount(right);
+        m_edit = edit;
     }
 
     private T m_key;
     
     private int m_height;
     
-    private Node m_left;
-    private Node m_right;
+    // Number of elements in this subtree, so counts and order statistics need no traversal
+    private int m_count;
+    
+    private Node<T> m_left;
+    private Node<T> m_right;
+    
+    // The AvlTree.Transient edit that may update this node in place, or null if none ever may
+    private final Object m_edit;
     
     private static int s_rebalanceCount;
+    
+    // In order iterator over the elements with indexes [start, end) of a tree
+    // The stack holds the nodes still to visit on the path down to the next element, so never needs more than the
+    //  tree's height, and iterating allocates nothing after construction.
+    static class InOrderIterator<T extends Comparable<T>> implements Iterator<T> {
+        InOrderIterator(Node<T> root, int start, int end) {
+            m_stack = new ArrayList<>(height(root));
+            m_remaining = Math.max(0, end - start);
+            
+            // Path down to the element at start. Nodes left by stepping right are before start, so not pushed.
+            Node<T> node = (m_remaining > 0) ? root : null;
+            int index = start;
+            while (node != null) {
+                int leftCount = getCount(node.m_left);
+                if (index < leftCount) {
+                    m_stack.add(node);
+                    node = node.m_left;
+                } else if (index > leftCount) {
+                    index -= leftCount + 1;
+                    node = node.m_right;
+                } else {
+                    m_stack.add(node);
+                    node = null;
+                }
+            }
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return m_remaining > 0;
+        }
+        
+        @Override
+        public T next() {
+            if (m_remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            
+            Node<T> node = m_stack.remove(m_stack.size() - 1);
+            m_remaining--;
+            if (m_remaining > 0) {
+                for (Node<T> left = node.m_right; left != null; left = left.m_left) {
+                    m_stack.add(left);
+                }
+            }
+            return node.m_key;
+        }
+        
+        private final ArrayList<Node<T>> m_stack;
+        private int m_remaining;
+    }
 }
 
-public class AvlTree<T extends Comparable<T>> {
+public class AvlTree<T extends Comparable<T>> implements Iterable<T> {
     public AvlTree() {
         m_root = null;
     }
     
-    public AvlTree add(T elem) {
+    // Builds a balanced tree of the elements in O(n), rather than O(n log n) by repeated add()
+    // Throws IllegalArgumentException unless sorted is strictly increasing
+    public static <T extends Comparable<T>> AvlTree<T> fromSorted(T[] sorted) {
+        for (int i = 1; i < sorted.length; i++) {
+            checkIncreasing(sorted[i - 1], sorted[i]);
+        }
+        return new AvlTree<>(Node.fromSorted(sorted, 0, sorted.length));
+    }
+    
+    // As fromSorted(T[]), reading exactly count elements from sorted, e.g. streamed from a snapshot file
+    // Throws IllegalArgumentException unless sorted has exactly count elements, strictly increasing
+    public static <T extends Comparable<T>> AvlTree<T> fromSorted(Iterator<? extends T> sorted, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count must not be negative: " + count);
+        }
+        
+        CheckedIterator<T> checked = new CheckedIterator<>(sorted, count);
+        AvlTree<T> result = new AvlTree<>(Node.fromSorted(checked, count));
+        if (sorted.hasNext()) {
+            throw new IllegalArgumentException("More than the expected " + count + " elements");
+        }
+        return result;
+    }
+    
+    // Sorts a copy of the elements, and drops duplicates, then builds as fromSorted(T[])
+    public static <T extends Comparable<T>> AvlTree<T> fromUnsorted(Collection<? extends T> elems) {
+        List<T> sorted = new ArrayList<>(elems);
+        Collections.sort(sorted);
+        
+        int distinct = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            if ((distinct == 0) || (sorted.get(distinct - 1).compareTo(sorted.get(i)) != 0)) {
+                sorted.set(distinct++, sorted.get(i));
+            }
+        }
+        return new AvlTree<>(Node.fromSorted(sorted.iterator(), distinct));
+    }
+    
+    private static <T extends Comparable<T>> void checkIncreasing(T previous, T next) {
+        if (previous.compareTo(next) >= 0) {
+            throw new IllegalArgumentException("Elements must be strictly increasing, found " + previous
+                    + " then " + next);
+        }
+    }
+    
+    // Passes through the elements of a sorted input, checking it as it goes
+    private static class CheckedIterator<T extends Comparable<T>> implements Iterator<T> {
+        CheckedIterator(Iterator<? extends T> source, int count) {
+            m_source = source;
+            m_count = count;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return m_source.hasNext();
+        }
+        
+        @Override
+        public T next() {
+            T next;
+            try {
+                next = m_source.next();
+            } catch (NoSuchElementException e) {
+                throw new IllegalArgumentException("Expected " + m_count + " elements, found " + m_read);
+            }
+            
+            if (m_read > 0) {
+                checkIncreasing(m_previous, next);
+            }
+            m_previous = next;
+            m_read++;
+            return next;
+        }
+        
+        private final Iterator<? extends T> m_source;
+        private final int m_count;
+        private int m_read;
+        private T m_previous;
+    }
+    
+    public AvlTree<T> add(T elem) {
         if (!contains(elem)) {
-            return new AvlTree(Node.add(m_root, elem));
+            return new AvlTree<>(Node.add(m_root, elem));
         }
         return this;
     }
     
-    public AvlTree remove(T elem) {
+    public AvlTree<T> remove(T elem) {
         if (contains(elem)) {
-            return new AvlTree(m_root.remove(elem));
+            return new AvlTree<>(m_root.remove(elem));
         }
         return this;
     }
@@ -298,10 +548,68 @@ public class AvlTree<T extends Comparable<T>> {
         return Node.getCount(m_root);
     }
     
+    // Number of elements less than elem, i.e. its index if present, in O(log n)
+    public int rank(T elem) {
+        return Node.rank(m_root, elem);
+    }
+    
+    // The element with index smaller elements, e.g. select(getCount() / 2) is the median, in O(log n)
+    public T select(int index) {
+        if ((index < 0) || (index >= getCount())) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of range for " + getCount() + " elements");
+        }
+        return Node.select(m_root, index);
+    }
+    
+    // Number of elements from fromElem (inclusive) to toElem (exclusive), in O(log n)
+    public int countInRange(T fromElem, T toElem) {
+        if (fromElem.compareTo(toElem) > 0) {
+            throw new IllegalArgumentException("Range start " + fromElem + " is after its end " + toElem);
+        }
+        return rank(toElem) - rank(fromElem);
+    }
+    
     public boolean isValid() {
         return (m_root == null) || m_root.isValid();
     }
     
+    // Elements in increasing order
+    @Override
+    public Iterator<T> iterator() {
+        return new Node.InOrderIterator<>(m_root, 0, getCount());
+    }
+    
+    // Splits by index into halves of equal size, so parallel streams get an even share each
+    @Override
+    public Spliterator<T> spliterator() {
+        return new RangeSpliterator<>(m_root, 0, getCount());
+    }
+    
+    public Stream<T> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+    
+    public Stream<T> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+    
+    // Read only views of the elements less than toElem, from fromElem on, and from fromElem to before toElem
+    // They share this tree's nodes rather than copying, and as the tree never changes, neither do they
+    public Set<T> headSet(T toElem) {
+        return new RangeView<>(m_root, null, Objects.requireNonNull(toElem));
+    }
+    
+    public Set<T> tailSet(T fromElem) {
+        return new RangeView<>(m_root, Objects.requireNonNull(fromElem), null);
+    }
+    
+    public Set<T> subSet(T fromElem, T toElem) {
+        if (fromElem.compareTo(toElem) > 0) {
+            throw new IllegalArgumentException("Range start " + fromElem + " is after its end " + toElem);
+        }
+        return new RangeView<>(m_root, fromElem, toElem);
+    }
+    
     @Override
     public String toString() {
         return Node.nodeToString(m_root);
@@ -310,10 +618,189 @@ public class AvlTree<T extends Comparable<T>> {
     public static int getRebalanceCount() {
         return Node.getRebalanceCount();
     }
+    
+    // A mutable copy of this tree, for a batch of changes without copying a path per change
+    public Transient<T> asTransient() {
+        return new Transient<>(m_root);
+    }
+    
+    // Mutable tree for batches of changes, like Clojure's transients. Nodes it makes are its own, so later changes
+    //  update them in place rather than copying the path to them. Nodes shared with persistent trees are copied on
+    //  first change, as usual, so those trees never see any change.
+    // persistent() hands the nodes over as an immutable AvlTree, after which the transient can no longer be used.
+    // Not thread safe.
+    public static class Transient<T extends Comparable<T>> {
+        private Transient(Node<T> root) {
+            m_root = root;
+            m_edit = new Object();
+        }
+        
+        public Transient<T> add(T elem) {
+            checkEditable();
+            if (!Node.contains(m_root, elem)) {
+                m_root = Node.add(m_root, elem, m_edit);
+            }
+            return this;
+        }
+        
+        public Transient<T> remove(T elem) {
+            checkEditable();
+            if (Node.contains(m_root, elem)) {
+                m_root = m_root.remove(elem, m_edit);
+            }
+            return this;
+        }
+        
+        public boolean contains(T elem) {
+            checkEditable();
+            return Node.contains(m_root, elem);
+        }
+        
+        public int getCount() {
+            checkEditable();
+            return Node.getCount(m_root);
+        }
+        
+        // The tree as it now is. Ends the edit, so none of its nodes can change again.
+        public AvlTree<T> persistent() {
+            checkEditable();
+            m_edit = null;
+            return new AvlTree<>(m_root);
+        }
+        
+        private void checkEditable() {
+            if (m_edit == null) {
+                throw new IllegalStateException("Transient used after persistent()");
+            }
+        }
+        
+        private Node<T> m_root;
+        
+        // Owner of the nodes made by this transient, or null once persistent
+        private Object m_edit;
+    }
+
+    // Elements in [fromElem, toElem) of a tree, where a null bound means unbounded
+    private static class RangeView<T extends Comparable<T>> extends AbstractSet<T> {
+        RangeView(Node<T> root, T fromElem, T toElem) {
+            m_root = root;
+            m_fromElem = fromElem;
+            m_toElem = toElem;
+            m_start = (fromElem == null) ? 0 : Node.rank(root, fromElem);
+            m_end = (toElem == null) ? Node.getCount(root) : Node.rank(root, toElem);
+        }
+        
+        @Override
+        public Iterator<T> iterator() {
+            return new Node.InOrderIterator<>(m_root, m_start, m_end);
+        }
+        
+        @Override
+        public Spliterator<T> spliterator() {
+            return new RangeSpliterator<>(m_root, m_start, m_end);
+        }
+        
+        @Override
+        public int size() {
+            return m_end - m_start;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean contains(Object o) {
+            T elem = (T) o;
+            if ((m_fromElem != null) && (m_fromElem.compareTo(elem) > 0)) {
+                return false;
+            }
+            if ((m_toElem != null) && (m_toElem.compareTo(elem) <= 0)) {
+                return false;
+            }
+            return Node.contains(m_root, elem);
+        }
+        
+        private final Node<T> m_root;
+        private final T m_fromElem;
+        private final T m_toElem;
+        private final int m_start;
+        private final int m_end;
+    }
+    
+    // Elements with indexes [start, end) of a tree. Splits at the middle index, which subtree sizes make O(1),
+    //  and only walks down to its first element once it is advanced.
+    private static class RangeSpliterator<T extends Comparable<T>> implements Spliterator<T> {
+        RangeSpliterator(Node<T> root, int start, int end) {
+            m_root = root;
+            m_start = start;
+            m_end = end;
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (m_start >= m_end) {
+                return false;
+            }
+            if (m_iterator == null) {
+                m_iterator = new Node.InOrderIterator<>(m_root, m_start, m_end);
+            }
+            
+            m_start++;
+            action.accept(m_iterator.next());
+            return true;
+        }
+        
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (m_start >= m_end) {
+                return;
+            }
+            Iterator<T> iterator = (m_iterator != null)
+                    ? m_iterator
+                    : new Node.InOrderIterator<>(m_root, m_start, m_end);
+            m_start = m_end;
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+            }
+        }
+        
+        @Override
+        public Spliterator<T> trySplit() {
+            int middle = (m_start + m_end) >>> 1;
+            if (middle == m_start) {
+                return null;
+            }
+            
+            Spliterator<T> prefix = new RangeSpliterator<>(m_root, m_start, middle);
+            m_start = middle;
+            // Any iterator already started is now at the wrong place, so walk down again when next needed
+            m_iterator = null;
+            return prefix;
+        }
+        
+        @Override
+        public long estimateSize() {
+            return m_end - m_start;
+        }
+        
+        @Override
+        public int characteristics() {
+            return ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+        
+        // Natural ordering
+        @Override
+        public Comparator<? super T> getComparator() {
+            return null;
+        }
+        
+        private final Node<T> m_root;
+        private int m_start;
+        private final int m_end;
+        private Iterator<T> m_iterator;
+    }
 
-    private AvlTree(Node root) {
+    private AvlTree(Node<T> root) {
         m_root = root;
     }
     
-    private Node m_root = null;
+    private final Node<T> m_root;
 }
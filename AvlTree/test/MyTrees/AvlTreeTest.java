@@ -4,9 +4,17 @@
  */
 package MyTrees;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.Spliterator;
 import java.util.TreeSet;
+import java.util.stream.Collectors;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -309,6 +317,277 @@ public class AvlTreeTest {
         System.out.printf("#Rebalances    = %,d\n", AvlTree.getRebalanceCount());
     }
 
+    @Test
+    public void testFromSorted() {
+        for (int n = 0; n < 200; n++) {
+            Integer[] sorted = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = 3 * i;
+            }
+            
+            m_tree = AvlTree.fromSorted(sorted);
+            m_ref = new TreeSet<>(Arrays.asList(sorted));
+
+            assertTrue(m_tree.isValid());
+            assertTreeMatches();
+            int minHeight = (int) Math.ceil(Math.log(n + 1) / Math.log(2));
+            assertEquals(minHeight, m_tree.getHeight());
+            assertFalse(m_tree.contains(1));
+        }
+    }
+    
+    @Test
+    public void testFromSortedIterator() {
+        List<Integer> sorted = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sorted.add(i);
+        }
+        
+        m_tree = AvlTree.fromSorted(sorted.iterator(), sorted.size());
+        m_ref.addAll(sorted);
+        assertTrue(m_tree.isValid());
+        assertTreeMatches();
+        
+        // Bulk built trees carry on as normal persistent trees
+        checkPersistentRemove(500);
+        checkPersistentAdd(5000);
+        checkPersistentRemove(0);
+        assertTrue(m_tree.isValid());
+    }
+    
+    @Test
+    public void testFromUnsorted() {
+        Random rand = new Random(8231);
+        List<Integer> elems = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            elems.add(rand.nextInt(5000));
+        }
+        
+        m_tree = AvlTree.fromUnsorted(elems);
+        m_ref.addAll(elems);
+        
+        assertTrue(m_tree.isValid());
+        assertTreeMatches();
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedRejectsUnsorted() {
+        AvlTree.fromSorted(new Integer[] { 1, 2, 4, 3 });
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedRejectsDuplicates() {
+        AvlTree.fromSorted(Arrays.asList(1, 2, 2, 3).iterator(), 4);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromSortedRejectsShortIterator() {
+        AvlTree.fromSorted(Arrays.asList(1, 2, 3).iterator(), 4);
+    }
+    
+    @Test
+    public void testTransient() {
+        Random rand = new Random(4417);
+        AvlTree.Transient<Integer> editing = m_tree.asTransient();
+        
+        for (int i = 0; i < 20000; i++) {
+            Integer elem = rand.nextInt(3000);
+            if (rand.nextInt(3) == 0) {
+                editing.remove(elem);
+                m_ref.remove(elem);
+            } else {
+                editing.add(elem);
+                m_ref.add(elem);
+            }
+            assertEquals(m_ref.size(), editing.getCount());
+        }
+        
+        m_tree = editing.persistent();
+        assertTrue(m_tree.isValid());
+        assertTreeMatches();
+    }
+    
+    @Test
+    public void testTransientLeavesPersistentUnchanged() {
+        for (int i = 0; i < 1000; i += 2) {
+            add(i);
+        }
+        AvlTree<Integer> original = m_tree;
+        SortedSet<Integer> originalRef = new TreeSet<>(m_ref);
+        
+        Random rand = new Random(90210);
+        for (int batch = 0; batch < 3; batch++) {
+            AvlTree<Integer> previous = m_tree;
+            SortedSet<Integer> previousRef = new TreeSet<>(m_ref);
+            
+            AvlTree.Transient<Integer> editing = m_tree.asTransient();
+            for (int i = 0; i < 2000; i++) {
+                Integer elem = rand.nextInt(1000);
+                if (rand.nextBoolean()) {
+                    editing.remove(elem);
+                    m_ref.remove(elem);
+                } else {
+                    editing.add(elem);
+                    m_ref.add(elem);
+                }
+            }
+            m_tree = editing.persistent();
+            assertTrue(m_tree.isValid());
+            assertTreeMatches();
+            assertTreeMatches(previous, previousRef);
+            
+            // Persistent changes after the batch copy as usual
+            checkPersistentAdd(5000 + batch);
+        }
+        
+        assertTrue(original.isValid());
+        assertTreeMatches(original, originalRef);
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testTransientUsedAfterPersistent() {
+        AvlTree.Transient<Integer> editing = m_tree.asTransient();
+        editing.add(1);
+        editing.persistent();
+        editing.add(2);
+    }
+    
+    @Test
+    public void testRankAndSelect() {
+        Random rand = new Random(2718);
+        for (int i = 0; i < 3000; i++) {
+            if (rand.nextInt(4) == 0) {
+                delete(rand.nextInt(2000));
+            } else {
+                add(rand.nextInt(2000));
+            }
+        }
+        assertTrue(m_tree.isValid());
+        assertTreeMatches();
+        
+        List<Integer> sorted = new ArrayList<>(m_ref);
+        for (int index = 0; index < sorted.size(); index++) {
+            assertEquals(sorted.get(index), m_tree.select(index));
+            assertEquals(index, m_tree.rank(sorted.get(index)));
+        }
+        for (int elem = -1; elem <= 2000; elem++) {
+            assertEquals(m_ref.headSet(elem).size(), m_tree.rank(elem));
+        }
+    }
+    
+    @Test
+    public void testCountInRange() {
+        for (int i = 0; i < 500; i += 3) {
+            add(i);
+        }
+        Random rand = new Random(1618);
+        for (int i = 0; i < 1000; i++) {
+            int from = rand.nextInt(520) - 10;
+            int to = from + rand.nextInt(200);
+            assertEquals(m_ref.subSet(from, to).size(), m_tree.countInRange(from, to));
+        }
+        assertEquals(0, m_tree.countInRange(10, 10));
+    }
+    
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSelectOutOfRange() {
+        add(10);
+        add(20);
+        m_tree.select(2);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testCountInBackwardsRange() {
+        m_tree.countInRange(20, 10);
+    }
+    
+    @Test
+    public void testIterator() {
+        Random rand = new Random(3141);
+        for (int i = 0; i < 2000; i++) {
+            assertIteratesAs(m_ref, m_tree.iterator());
+            if (rand.nextInt(3) == 0) {
+                delete(rand.nextInt(1000));
+            } else {
+                add(rand.nextInt(1000));
+            }
+        }
+    }
+    
+    @Test(expected = NoSuchElementException.class)
+    public void testIteratorPastEnd() {
+        add(1);
+        Iterator<Integer> it = m_tree.iterator();
+        it.next();
+        it.next();
+    }
+    
+    @Test
+    public void testRangeViews() {
+        for (int i = 0; i < 300; i += 3) {
+            add(i);
+        }
+        Random rand = new Random(1414);
+        for (int i = 0; i < 500; i++) {
+            int from = rand.nextInt(320) - 10;
+            int to = from + rand.nextInt(100);
+            
+            assertIteratesAs(m_ref.headSet(to), m_tree.headSet(to).iterator());
+            assertIteratesAs(m_ref.tailSet(from), m_tree.tailSet(from).iterator());
+            
+            Set<Integer> view = m_tree.subSet(from, to);
+            SortedSet<Integer> refView = m_ref.subSet(from, to);
+            assertIteratesAs(refView, view.iterator());
+            assertEquals(refView.size(), view.size());
+            assertEquals(refView, view);
+            for (int elem = from - 3; elem < to + 3; elem++) {
+                assertEquals(refView.contains(elem), view.contains(elem));
+            }
+        }
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void testRangeViewIsReadOnly() {
+        add(1);
+        m_tree.tailSet(0).add(2);
+    }
+    
+    @Test
+    public void testSpliterator() {
+        for (int i = 0; i < 10000; i++) {
+            add(i);
+        }
+        
+        Spliterator<Integer> second = m_tree.spliterator();
+        assertTrue(second.hasCharacteristics(Spliterator.SIZED | Spliterator.SORTED));
+        
+        // Advance part way, then split what is left into even halves
+        List<Integer> seen = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(second.tryAdvance(seen::add));
+        }
+        Spliterator<Integer> first = second.trySplit();
+        assertEquals(4950, first.estimateSize());
+        assertEquals(4950, second.estimateSize());
+        first.forEachRemaining(seen::add);
+        second.forEachRemaining(seen::add);
+        assertFalse(second.tryAdvance(seen::add));
+        assertEquals(new ArrayList<>(m_ref), seen);
+        
+        long sum = m_tree.parallelStream().mapToLong(Integer::longValue).sum();
+        assertEquals(10000L * 9999 / 2, sum);
+        assertEquals(new ArrayList<>(m_ref), m_tree.parallelStream().collect(Collectors.toList()));
+        assertEquals(m_ref.subSet(2000, 3000).size(), m_tree.subSet(2000, 3000).parallelStream().count());
+    }
+    
+    private static void assertIteratesAs(SortedSet<Integer> ref, Iterator<Integer> it) {
+        for (Integer elem : ref) {
+            assertTrue(it.hasNext());
+            assertEquals(elem, it.next());
+        }
+        assertFalse(it.hasNext());
+    }
+    
     private void add(int x) {
         m_tree = m_tree.add(new Integer(x));
         m_ref.add(new Integer(x));
@@ -320,12 +599,16 @@ public class AvlTreeTest {
     }
     
     private void assertTreeMatches() {
-        assertEquals(m_ref.size(), m_tree.getCount());
-        for (Integer i : m_ref) {
-            assertTrue(m_tree.contains(i));
+        assertTreeMatches(m_tree, m_ref);
+    }
+    
+    private static void assertTreeMatches(AvlTree<Integer> tree, SortedSet<Integer> ref) {
+        assertEquals(ref.size(), tree.getCount());
+        for (Integer i : ref) {
+            assertTrue(tree.contains(i));
         }
-        double heightLimit = 1.44 * Math.ceil(Math.log(m_tree.getCount() + 1) / Math.log(2));
-        assertTrue(m_tree.getHeight() <= heightLimit);
+        double heightLimit = 1.44 * Math.ceil(Math.log(tree.getCount() + 1) / Math.log(2));
+        assertTrue(tree.getHeight() <= heightLimit);
     }
     private AvlTree<Integer> m_tree;
     private SortedSet<Integer> m_ref;
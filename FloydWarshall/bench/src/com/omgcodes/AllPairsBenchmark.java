@@ -0,0 +1,72 @@
+package com.omgcodes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All pairs engines over synthetic graphs: Graph.floydWarshall() (the serial reference), and the parallel and
+ * blocked engines on one thread, so kernels compare like for like. Throughput is whole calculations per minute.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class AllPairsBenchmark {
+    @Param({"grid", "sparse", "dense", "road"})
+    public String shape;
+
+    @Param({"100", "250", "500"})
+    public int nodes;
+
+    private Graph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File file = File.createTempFile("graph-" + shape + "-" + nodes + "-", ".csv");
+        file.deleteOnExit();
+        SyntheticGraphs.writeGraph(shape, nodes, 1, file);
+        graph = Main.loadGraph(file);
+    }
+
+    @Benchmark
+    public FloydWarshallOutput serial() {
+        return graph.floydWarshall(ProgressListener.quiet);
+    }
+
+    @Benchmark
+    public FloydWarshallOutput parallel() throws IOException {
+        ParallelFloydWarshall engine = new ParallelFloydWarshall(graph, 1, false);
+        engine.setProgressListener(ProgressListener.quiet);
+        return engine.run();
+    }
+
+    @Benchmark
+    public FloydWarshallOutput parallelBranchFree() throws IOException {
+        ParallelFloydWarshall engine = new ParallelFloydWarshall(graph, 1, true);
+        engine.setProgressListener(ProgressListener.quiet);
+        return engine.run();
+    }
+
+    @Benchmark
+    public FloydWarshallOutput blocked() {
+        BlockedFloydWarshall engine = new BlockedFloydWarshall(graph, BlockedFloydWarshall.defaultBlockSize, 1, false);
+        engine.setProgressListener(ProgressListener.quiet);
+        return engine.run();
+    }
+}
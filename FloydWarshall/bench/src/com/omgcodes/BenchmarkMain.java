@@ -0,0 +1,24 @@
+package com.omgcodes;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of target/benchmarks.jar. Takes the usual JMH command line (benchmark regex, -p param=values, -f,
+ * -wi, -i, -rf json ...), and always adds the gc profiler, so every result has its allocation rate
+ * (gc.alloc.rate.norm is bytes allocated per operation) next to its throughput.
+ * Runs everything if no benchmark is named, which takes hours. E.g. a quick check of one kernel:
+ *   java -jar target/benchmarks.jar "AllPairsBenchmark.parallel$" -p shape=grid -p nodes=250 -wi 1 -i 2
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,63 @@
+package com.omgcodes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV loading: Main.loadGraph() for the links, and Main.loadPathsToOutput() for an OD pair list against them.
+ * Files are written once per trial, so repeated loads are from the page cache, i.e. parsing rather than disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LoadBenchmark {
+    private static final int odPairCount = 1000000;
+
+    @Param({"grid", "sparse", "road"})
+    public String shape;
+
+    @Param({"10000", "100000", "1000000"})
+    public int nodes;
+
+    private File graphFile;
+    private File odPairFile;
+    private Graph graph;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        graphFile = File.createTempFile("graph-" + shape + "-" + nodes + "-", ".csv");
+        graphFile.deleteOnExit();
+        SyntheticGraphs.writeGraph(shape, nodes, 1, graphFile);
+        odPairFile = File.createTempFile("od-" + shape + "-" + nodes + "-", ".csv");
+        odPairFile.deleteOnExit();
+        SyntheticGraphs.writeOdPairs(shape, nodes, odPairCount, 2, odPairFile);
+        graph = Main.loadGraph(graphFile);
+    }
+
+    @Benchmark
+    public Graph loadGraph() throws IOException {
+        return Main.loadGraph(graphFile);
+    }
+
+    @Benchmark
+    public OdPairs loadOdPairs() throws IOException {
+        return Main.loadPathsToOutput(odPairFile, graph);
+    }
+}
@@ -0,0 +1,175 @@
+package com.omgcodes;
+
+import org.apache.commons.cli.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Latency and throughput of a running PathQueryServer (Main -serve), using the OD Pairs of a CSV file as queries.
+ *  - latency : one connection, one request at a time
+ *  - throughput : several connections, each pipelining its requests
+ * Not a JMH benchmark, as it times a separate server process. Run it from the benchmarks jar, e.g.
+ *   java -cp target/benchmarks.jar com.omgcodes.PathQueryBenchmark -port 7070 -odPairs odPairs.csv
+ */
+public class PathQueryBenchmark {
+
+    public static void main(String[] args) {
+        try {
+            CommandLine cli = parseCli(args);
+            int port = Integer.parseInt(cli.getOptionValue("port"));
+            int queryCount = positiveInt(cli, "queries", "100000");
+            int latencyQueryCount = positiveInt(cli, "latencyQueries", "10000");
+            int connectionCount = positiveInt(cli, "connections", "4");
+            String type = cli.getOptionValue("type", "PATH");
+
+            List<String> requests = loadRequests(new File(cli.getOptionValue("odPairs")), type);
+            if (requests.isEmpty()) {
+                throw new IllegalArgumentException("No OD Pairs to query");
+            }
+
+            measureLatency(port, requests, latencyQueryCount);
+            measureThroughput(port, requests, queryCount, connectionCount);
+        } catch (Exception e) {
+            System.out.printf("Error: %s\n", e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    private static CommandLine parseCli(String[] args) throws ParseException {
+        Options options = new Options();
+        options.addOption(
+                Option.builder("port")
+                        .hasArg()
+                        .required()
+                        .desc("Loopback port the server is listening on")
+                        .build());
+        options.addOption(
+                Option.builder("odPairs")
+                        .hasArg()
+                        .required()
+                        .desc("OD Pair list CSV file to take queries from, cycling through it as needed")
+                        .build());
+        options.addOption(
+                Option.builder("queries")
+                        .hasArg()
+                        .desc("Queries for the throughput test (default 100000)")
+                        .build());
+        options.addOption(
+                Option.builder("latencyQueries")
+                        .hasArg()
+                        .desc("Queries for the latency test (default 10000)")
+                        .build());
+        options.addOption(
+                Option.builder("connections")
+                        .hasArg()
+                        .desc("Connections for the throughput test (default 4)")
+                        .build());
+        options.addOption(
+                Option.builder("type")
+                        .hasArg()
+                        .desc("Query type: PATH (default) or DIST")
+                        .build());
+
+        CommandLineParser parser = new DefaultParser();
+        return parser.parse(options, args);
+    }
+
+    private static int positiveInt(CommandLine cli, String option, String defaultValue) {
+        int value = Integer.parseInt(cli.getOptionValue(option, defaultValue));
+        if (value < 1) {
+            throw new IllegalArgumentException(String.format("-%s must be positive: %d", option, value));
+        }
+        return value;
+    }
+
+    private static List<String> loadRequests(File source, String type) throws IOException {
+        if (!type.equals("PATH") && !type.equals("DIST")) {
+            throw new IllegalArgumentException("Unknown query type: " + type);
+        }
+        List<String> result = new ArrayList<String>();
+        try (MappedCsvReader rd = new MappedCsvReader(source, Charset.defaultCharset())) {
+            while (rd.nextRecord()) {
+                result.add(type + "," + rd.getString(0) + "," + rd.getString(1));
+            }
+        }
+        System.out.printf("%,d %s queries loaded from %s\n", result.size(), type, source.getAbsolutePath());
+        return result;
+    }
+
+    private static void measureLatency(int port, List<String> requests, int queryCount) throws IOException {
+        long[] latenciesNs = new long[queryCount];
+        try (PathQueryClient client = new PathQueryClient(port)) {
+            // Warm up both sides before timing.
+            for (int q = 0; q < Math.min(queryCount, 1000); q++) {
+                client.query(requests.get(q % requests.size()));
+            }
+            for (int q = 0; q < queryCount; q++) {
+                long startNs = System.nanoTime();
+                client.query(requests.get(q % requests.size()));
+                latenciesNs[q] = System.nanoTime() - startNs;
+            }
+        }
+
+        Arrays.sort(latenciesNs);
+        System.out.printf("Latency over %,d queries [us] : p50 %,.1f, p90 %,.1f, p99 %,.1f, max %,.1f\n",
+                queryCount,
+                percentile(latenciesNs, 0.50) / 1e3,
+                percentile(latenciesNs, 0.90) / 1e3,
+                percentile(latenciesNs, 0.99) / 1e3,
+                latenciesNs[queryCount - 1] / 1e3);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(fraction * (sorted.length - 1)))];
+    }
+
+    private static void measureThroughput(int port, List<String> requests, int queryCount, int connectionCount)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(connectionCount);
+        try {
+            long startNs = System.nanoTime();
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int c = 0; c < connectionCount; c++) {
+                final int first = (int) ((long) queryCount * c / connectionCount);
+                final int end = (int) ((long) queryCount * (c + 1) / connectionCount);
+                results.add(pool.submit(() -> {
+                    List<String> batch = new ArrayList<String>(end - first);
+                    for (int q = first; q < end; q++) {
+                        batch.add(requests.get(q % requests.size()));
+                    }
+                    try (PathQueryClient client = new PathQueryClient(port)) {
+                        return countErrors(client.query(batch));
+                    }
+                }));
+            }
+            int errorCount = 0;
+            for (Future<Integer> result : results) {
+                errorCount += result.get();
+            }
+            double takenS = (System.nanoTime() - startNs) / 1e9;
+
+            System.out.printf("Throughput over %,d queries, %d connection(s) : %,.0f queries/s (%,d errors)\n",
+                    queryCount, connectionCount, queryCount / takenS, errorCount);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static int countErrors(List<String> responses) {
+        int result = 0;
+        for (String response : responses) {
+            if (response.startsWith("ERROR,")) {
+                result++;
+            }
+        }
+        return result;
+    }
+}
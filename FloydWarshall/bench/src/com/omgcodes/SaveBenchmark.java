@@ -0,0 +1,77 @@
+package com.omgcodes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Main.saveBestPaths() for an OD pair list over a solved synthetic graph, in each output format.
+ * The all pairs result is calculated once per trial, so only rebuilding and writing paths is timed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SaveBenchmark {
+    private static final int odPairCount = 200000;
+
+    @Param({"grid", "road"})
+    public String shape;
+
+    @Param({"1000", "2500"})
+    public int nodes;
+
+    @Param({"csv", "binary"})
+    public String format;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private OdPairs pathsToSave;
+    private FloydWarshallOutput output;
+    private File outputFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File graphFile = File.createTempFile("graph-" + shape + "-" + nodes + "-", ".csv");
+        graphFile.deleteOnExit();
+        SyntheticGraphs.writeGraph(shape, nodes, 1, graphFile);
+        File odPairFile = File.createTempFile("od-" + shape + "-" + nodes + "-", ".csv");
+        odPairFile.deleteOnExit();
+        SyntheticGraphs.writeOdPairs(shape, nodes, odPairCount, 2, odPairFile);
+
+        Graph graph = Main.loadGraph(graphFile);
+        pathsToSave = Main.loadPathsToOutput(odPairFile, graph);
+        int allThreads = Runtime.getRuntime().availableProcessors();
+        ParallelFloydWarshall engine = new ParallelFloydWarshall(graph, allThreads, false);
+        engine.setProgressListener(ProgressListener.quiet);
+        output = engine.run();
+        outputFile = File.createTempFile("paths-", "." + format);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        outputFile.delete();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        Main.saveBestPaths(pathsToSave, output, outputFile, format, threads);
+    }
+}
@@ -0,0 +1,117 @@
+package com.omgcodes;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes synthetic graphs and OD pair lists as the CSV files Main reads, so benchmarks go through the real loader.
+ * Every shape is seeded, so a given shape, size and seed always gives the same file. Shapes:
+ *  grid   : square grid, both ways between 4-neighbours
+ *  sparse : random arcs, 4 per node on average
+ *  dense  : random arcs, a quarter of all pairs
+ *  road   : grid with 1 in 10 links missing, plus faster "highway" links every 8th row and column
+ * Lengths have 3 decimal places, as in real input, so the double engines are used.
+ */
+class SyntheticGraphs {
+    private static final int highwaySpacing = 8;
+
+    // Writes a graph of about nodes nodes (grids round up to a square).
+    public static void writeGraph(String shape, int nodes, long seed, File file) throws IOException {
+        Random random = new Random(seed);
+        try (Writer writer = open(file)) {
+            switch (shape) {
+                case "grid":
+                    writeGrid(writer, side(nodes), random, false);
+                    break;
+                case "road":
+                    writeGrid(writer, side(nodes), random, true);
+                    break;
+                case "sparse":
+                    writeRandom(writer, nodes, 4L * nodes, random);
+                    break;
+                case "dense":
+                    writeRandom(writer, nodes, (long) nodes * nodes / 4, random);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown graph shape: " + shape);
+            }
+        }
+    }
+
+    // Writes pairs random OD pairs between ids of a graph of the given shape and size.
+    public static void writeOdPairs(String shape, int nodes, int pairs, long seed, File file) throws IOException {
+        Random random = new Random(seed);
+        boolean grid = shape.equals("grid") || shape.equals("road");
+        int count = grid ? side(nodes) * side(nodes) : nodes;
+        try (Writer writer = open(file)) {
+            for (int p = 0; p < pairs; p++) {
+                writer.write(id(random.nextInt(count)));
+                writer.write(',');
+                writer.write(id(random.nextInt(count)));
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static Writer open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charset.defaultCharset()));
+    }
+
+    private static int side(int nodes) {
+        return (int) Math.ceil(Math.sqrt(nodes));
+    }
+
+    private static String id(int node) {
+        return "N" + node;
+    }
+
+    private static void writeArc(Writer writer, int from, int to, double length) throws IOException {
+        writer.write(id(from));
+        writer.write(',');
+        writer.write(id(to));
+        writer.write(',');
+        writer.write(String.format(Locale.ROOT, "%.3f", length));
+        writer.write('\n');
+    }
+
+    private static double length(Random random, double min, double max) {
+        return Math.round((min + random.nextDouble() * (max - min)) * 1000) / 1000.0;
+    }
+
+    private static void writeGrid(Writer writer, int side, Random random, boolean road) throws IOException {
+        for (int row = 0; row < side; row++) {
+            for (int column = 0; column < side; column++) {
+                int node = row * side + column;
+                if ((column + 1 < side) && !(road && (random.nextInt(10) == 0))) {
+                    boolean highway = road && (row % highwaySpacing == 0);
+                    double length = highway ? length(random, 0.2, 0.5) : length(random, 1, 10);
+                    writeArc(writer, node, node + 1, length);
+                    writeArc(writer, node + 1, node, length);
+                }
+                if ((row + 1 < side) && !(road && (random.nextInt(10) == 0))) {
+                    boolean highway = road && (column % highwaySpacing == 0);
+                    double length = highway ? length(random, 0.2, 0.5) : length(random, 1, 10);
+                    writeArc(writer, node, node + side, length);
+                    writeArc(writer, node + side, node, length);
+                }
+            }
+        }
+    }
+
+    private static void writeRandom(Writer writer, int nodes, long arcs, Random random) throws IOException {
+        // Every node has at least one arc, so every id is in the graph.
+        for (int node = 0; node < nodes; node++) {
+            writeArc(writer, node, random.nextInt(nodes), length(random, 1, 10));
+        }
+        for (long a = nodes; a < arcs; a++) {
+            writeArc(writer, random.nextInt(nodes), random.nextInt(nodes), length(random, 1, 10));
+        }
+    }
+}
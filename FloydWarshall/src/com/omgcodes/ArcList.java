@@ -0,0 +1,50 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of arcs by node index, in primitive arrays, e.g. as read from a CSV file before building a Graph.
+ * 16 bytes per arc at most, with no per arc objects.
+ */
+class ArcList {
+    private int count;
+    private int[] originIndices;
+    private int[] destinationIndices;
+    private double[] lengths;
+
+    public ArcList(int capacity) {
+        capacity = Math.max(16, capacity);
+        originIndices = new int[capacity];
+        destinationIndices = new int[capacity];
+        lengths = new double[capacity];
+    }
+
+    public void add(int originIndex, int destinationIndex, double length) {
+        if (count == originIndices.length) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, (long) count + (count >> 1) + 16);
+            originIndices = Arrays.copyOf(originIndices, capacity);
+            destinationIndices = Arrays.copyOf(destinationIndices, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        originIndices[count] = originIndex;
+        destinationIndices[count] = destinationIndex;
+        lengths[count] = length;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int originIndex(int arc) {
+        return originIndices[arc];
+    }
+
+    public int destinationIndex(int arc) {
+        return destinationIndices[arc];
+    }
+
+    public double length(int arc) {
+        return lengths[arc];
+    }
+}
@@ -0,0 +1,35 @@
+package com.omgcodes;
+
+/**
+ * MatrixStore over the classic double[][] / int[][] layout.
+ */
+class ArrayMatrixStore implements MatrixStore {
+    private final int[][] previousNodeIndex;
+    private final double[][] bestDistances;
+
+    public ArrayMatrixStore(int[][] previousNodeIndex, double[][] bestDistances) {
+        this.previousNodeIndex = previousNodeIndex;
+        this.bestDistances = bestDistances;
+    }
+
+    @Override
+    public int size() {
+        return bestDistances.length;
+    }
+
+    @Override
+    public double getBestDistance(int i, int j) {
+        return bestDistances[i][j];
+    }
+
+    @Override
+    public int getPreviousNodeIndex(int i, int j) {
+        return previousNodeIndex[i][j];
+    }
+
+    @Override
+    public void set(int i, int j, double bestDistance, int previousNodeIndex) {
+        this.bestDistances[i][j] = bestDistance;
+        this.previousNodeIndex[i][j] = previousNodeIndex;
+    }
+}
@@ -0,0 +1,150 @@
+package com.omgcodes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes best paths for OD pairs, in the CSV format "origin,destination,distance,via1;via2;...;".
+ * Pairs are split into chunks which are formatted into byte buffers in parallel, then written through a
+ * FileChannel in chunk order, so the file is in OD pair order whatever the thread count.
+ * There is one buffer per chunk in flight, and each is reused for a later chunk once written.
+ * Paths are rebuilt iteratively by walking previousNodeIndex back from the destination.
+ */
+class BestPathWriter {
+    private static final int pairsPerChunk = 16 * 1024;
+
+    private final FloydWarshallOutput output;
+    private final int threads;
+    // Encoded ids, so each is only converted to bytes once.
+    private final byte[][] idBytes;
+    // Written at the start of every line, e.g. a scenario column. Empty by default.
+    private byte[] linePrefix = new byte[0];
+
+    public BestPathWriter(FloydWarshallOutput output, int threads) {
+        this.output = output;
+        this.threads = ThreadCount.check(threads);
+        this.idBytes = encodeIds(output.indexToId);
+    }
+
+    public static byte[][] encodeIds(String[] indexToId) {
+        Charset charset = Charset.defaultCharset();
+        byte[][] result = new byte[indexToId.length][];
+        for (int i = 0; i < indexToId.length; i++) {
+            result[i] = indexToId[i].getBytes(charset);
+        }
+        return result;
+    }
+
+    public void setLinePrefix(String prefix) {
+        linePrefix = prefix.getBytes(Charset.defaultCharset());
+    }
+
+    // Returns the number of lines written, i.e. pairs with a path.
+    public long write(OdPairs pathsToSave, File outputPath) throws IOException {
+        final int chunkCount = (pathsToSave.count + pairsPerChunk - 1) / pairsPerChunk;
+        // Bound the chunks in flight, so memory does not grow with the number of pairs.
+        final int maxInFlight = 2 * threads;
+
+        long countLinesWritten = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileOutputStream stream = new FileOutputStream(outputPath)) {
+            FileChannel channel = stream.getChannel();
+            ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<Future<Chunk>>();
+            // Buffers of chunks already written. Only this thread takes and returns them.
+            ArrayDeque<ByteLineBuffer> freeBuffers = new ArrayDeque<ByteLineBuffer>();
+            int nextChunk = 0;
+            while ((nextChunk < chunkCount) || !inFlight.isEmpty()) {
+                while ((nextChunk < chunkCount) && (inFlight.size() < maxInFlight)) {
+                    final int start = nextChunk * pairsPerChunk;
+                    final int end = Math.min(pathsToSave.count, start + pairsPerChunk);
+                    final ByteLineBuffer buffer = freeBuffers.isEmpty()
+                            ? new ByteLineBuffer(64 * pairsPerChunk)
+                            : freeBuffers.pop();
+                    inFlight.add(pool.submit(() -> formatChunk(pathsToSave, start, end, buffer)));
+                    nextChunk++;
+                }
+
+                Chunk chunk = inFlight.remove().get();
+                chunk.buffer.writeTo(channel);
+                countLinesWritten += chunk.lineCount;
+                freeBuffers.push(chunk.buffer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted writing " + outputPath.getAbsolutePath(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed writing " + outputPath.getAbsolutePath(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return countLinesWritten;
+    }
+
+    private Chunk formatChunk(OdPairs pathsToSave, int start, int end, ByteLineBuffer buffer) {
+        buffer.clear();
+        Chunk result = new Chunk(buffer);
+        int[] viaNodes = new int[16];
+        for (int p = start; p < end; p++) {
+            int fromIndex = pathsToSave.originIndex[p];
+            int toIndex = pathsToSave.destinationIndex[p];
+            double distance = output.getBestDistance(fromIndex, toIndex);
+            if (distance == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+
+            // Walk back from the destination, then output in path order.
+            int viaCount = 0;
+            for (int via = output.getPreviousNodeIndex(fromIndex, toIndex);
+                 via != FloydWarshallOutput.nullNodeIndex;
+                 via = output.getPreviousNodeIndex(fromIndex, via)) {
+                if (viaCount == viaNodes.length) {
+                    if (viaCount > idBytes.length) {
+                        throw new IllegalStateException(String.format("Cycle in previous nodes from %s to %s",
+                                output.indexToId[fromIndex], output.indexToId[toIndex]));
+                    }
+                    viaNodes = Arrays.copyOf(viaNodes, 2 * viaCount);
+                }
+                viaNodes[viaCount++] = via;
+            }
+
+            result.buffer.append(linePrefix);
+            appendLine(result.buffer, idBytes, fromIndex, toIndex, distance, viaNodes, viaCount);
+            result.lineCount++;
+        }
+        return result;
+    }
+
+    // One output line. viaNodes[0 .. viaCount) are the via nodes in reverse path order, i.e. last node first.
+    public static void appendLine(ByteLineBuffer buffer, byte[][] idBytes,
+                                  int fromIndex, int toIndex, double distance, int[] viaNodes, int viaCount) {
+        buffer.append(idBytes[fromIndex]);
+        buffer.append((byte) ',');
+        buffer.append(idBytes[toIndex]);
+        buffer.append((byte) ',');
+        buffer.appendFixed6(distance);
+        buffer.append((byte) ',');
+        for (int v = viaCount - 1; v >= 0; v--) {
+            buffer.append(idBytes[viaNodes[v]]);
+            buffer.append((byte) ';');
+        }
+        buffer.appendLineSeparator();
+    }
+
+    private static class Chunk {
+        final ByteLineBuffer buffer;
+        int lineCount;
+
+        Chunk(ByteLineBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.omgcodes;
+
+import java.nio.ByteOrder;
+
+/**
+ * Layout of the binary best path result, shared by BinaryResultWriter and BinaryResultReader.
+ * All values little endian. One record per OD pair, in OD pair order, including pairs with no path.
+ *
+ *  header       : headerBytes, see the offsets below
+ *  idOffsets    : long[idCount + 1], byte offset of each id in idBytes
+ *  idBytes      : ids, encoded UTF-8, back to back
+ *  origins      : int[recordCount], id index
+ *  destinations : int[recordCount], id index
+ *  distances    : double[recordCount], +Inf if there is no path
+ *  pathOffsets  : long[recordCount + 1], record r's via nodes are pathNodes[pathOffsets[r] .. pathOffsets[r + 1])
+ *  pathNodes    : int[], via node id indices in path order, excluding origin and destination
+ */
+final class BinaryResultFormat {
+    public static final long magic = 0x4E49425053474D4FL; // "OMGSPBIN" little endian
+    public static final int version = 1;
+    public static final ByteOrder byteOrder = ByteOrder.LITTLE_ENDIAN;
+    public static final int headerBytes = 128;
+
+    // Header field offsets.
+    public static final int magicOffset = 0;
+    public static final int versionOffset = 8;
+    public static final int idCountOffset = 12;
+    public static final int recordCountOffset = 16;
+    public static final int idOffsetsStartOffset = 24;
+    public static final int idBytesStartOffset = 32;
+    public static final int originsStartOffset = 40;
+    public static final int destinationsStartOffset = 48;
+    public static final int distancesStartOffset = 56;
+    public static final int pathOffsetsStartOffset = 64;
+    public static final int pathNodesStartOffset = 72;
+    public static final int pathNodeCountOffset = 80;
+
+    private BinaryResultFormat() {
+    }
+}
@@ -0,0 +1,197 @@
+package com.omgcodes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Random access reader for files written by BinaryResultWriter.
+ * Each column is memory mapped, so any record's distance and path is found by index, without scanning the file,
+ * and only the pages touched are read. Records are in the order of the OD pairs the file was written for.
+ * Safe for concurrent readers, as all reads are absolute.
+ */
+class BinaryResultReader implements Closeable {
+    private final File file;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    private final int idCount;
+    private final int recordCount;
+    private final long pathNodeCount;
+
+    private final Column idOffsets;
+    private final Column idBytes;
+    private final Column origins;
+    private final Column destinations;
+    private final Column distances;
+    private final Column pathOffsets;
+    private final Column pathNodes;
+
+    public BinaryResultReader(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+        try {
+            this.channel = raf.getChannel();
+            if (channel.size() < BinaryResultFormat.headerBytes) {
+                throw new IOException(file.getAbsolutePath() + " is too short to be a binary result");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, BinaryResultFormat.headerBytes)
+                    .order(BinaryResultFormat.byteOrder);
+            if (header.getLong(BinaryResultFormat.magicOffset) != BinaryResultFormat.magic) {
+                throw new IOException(file.getAbsolutePath() + " is not a binary result");
+            }
+            int version = header.getInt(BinaryResultFormat.versionOffset);
+            if (version != BinaryResultFormat.version) {
+                throw new IOException(String.format("%s is binary result version %d, expected %d",
+                        file.getAbsolutePath(), version, BinaryResultFormat.version));
+            }
+
+            idCount = header.getInt(BinaryResultFormat.idCountOffset);
+            recordCount = (int) header.getLong(BinaryResultFormat.recordCountOffset);
+            pathNodeCount = header.getLong(BinaryResultFormat.pathNodeCountOffset);
+
+            idOffsets = map(header.getLong(BinaryResultFormat.idOffsetsStartOffset), 8, idCount + 1L);
+            long idByteCount = idOffsets.getLong(idCount);
+            idBytes = map(header.getLong(BinaryResultFormat.idBytesStartOffset), 1, idByteCount);
+            origins = map(header.getLong(BinaryResultFormat.originsStartOffset), 4, recordCount);
+            destinations = map(header.getLong(BinaryResultFormat.destinationsStartOffset), 4, recordCount);
+            distances = map(header.getLong(BinaryResultFormat.distancesStartOffset), 8, recordCount);
+            pathOffsets = map(header.getLong(BinaryResultFormat.pathOffsetsStartOffset), 8, recordCount + 1L);
+            pathNodes = map(header.getLong(BinaryResultFormat.pathNodesStartOffset), 4, pathNodeCount);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private Column map(long start, int elementBytes, long count) throws IOException {
+        long end = start + elementBytes * count;
+        if ((start < BinaryResultFormat.headerBytes) || (end > channel.size())) {
+            throw new IOException(String.format("%s is truncated or corrupt: column [%,d, %,d) outside file of %,d bytes",
+                    file.getAbsolutePath(), start, end, channel.size()));
+        }
+        return new Column(channel, start, elementBytes, count);
+    }
+
+    public int getIdCount() {
+        return idCount;
+    }
+
+    public String getId(int index) {
+        long start = idOffsets.getLong(index);
+        int length = (int) (idOffsets.getLong(index + 1) - start);
+        byte[] bytes = new byte[length];
+        for (int b = 0; b < length; b++) {
+            bytes[b] = idBytes.getByte(start + b);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public int getOriginIndex(int record) {
+        checkRecord(record);
+        return origins.getInt(record);
+    }
+
+    public int getDestinationIndex(int record) {
+        checkRecord(record);
+        return destinations.getInt(record);
+    }
+
+    // +Inf if there is no path.
+    public double getDistance(int record) {
+        checkRecord(record);
+        return distances.getDouble(record);
+    }
+
+    // Id indices of the nodes between origin and destination, in path order.
+    public int[] getViaNodeIndices(int record) {
+        checkRecord(record);
+        long start = pathOffsets.getLong(record);
+        int count = (int) (pathOffsets.getLong(record + 1) - start);
+        int[] result = new int[count];
+        for (int v = 0; v < count; v++) {
+            result[v] = pathNodes.getInt(start + v);
+        }
+        return result;
+    }
+
+    // Ids of the nodes between origin and destination, in path order.
+    public String[] getViaNodeIds(int record) {
+        int[] indices = getViaNodeIndices(record);
+        String[] result = new String[indices.length];
+        for (int v = 0; v < indices.length; v++) {
+            result[v] = getId(indices[v]);
+        }
+        return result;
+    }
+
+    private void checkRecord(int record) {
+        if ((record < 0) || (record >= recordCount)) {
+            throw new IndexOutOfBoundsException(String.format("Record %,d not in [0, %,d)", record, recordCount));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        raf.close();
+    }
+
+    /**
+     * One fixed width column, mapped in windows so it can be larger than 2GB.
+     */
+    private static class Column {
+        private static final long windowBytes = 1L << 30;
+
+        private final int elementBytes;
+        private final long elementsPerWindow;
+        private final ByteBuffer[] windows;
+
+        Column(FileChannel channel, long start, int elementBytes, long count) throws IOException {
+            this.elementBytes = elementBytes;
+            this.elementsPerWindow = windowBytes / elementBytes;
+            int windowCount = (int) Math.max(1, (count + elementsPerWindow - 1) / elementsPerWindow);
+            this.windows = new ByteBuffer[windowCount];
+            for (int w = 0; w < windowCount; w++) {
+                long first = w * elementsPerWindow;
+                long length = Math.min(elementsPerWindow, count - first) * elementBytes;
+                MappedByteBuffer window = channel.map(
+                        FileChannel.MapMode.READ_ONLY, start + first * elementBytes, length);
+                windows[w] = window.order(BinaryResultFormat.byteOrder);
+            }
+        }
+
+        private ByteBuffer window(long element) {
+            return windows[(int) (element / elementsPerWindow)];
+        }
+
+        private int offset(long element) {
+            return (int) (element % elementsPerWindow) * elementBytes;
+        }
+
+        byte getByte(long element) {
+            return window(element).get(offset(element));
+        }
+
+        int getInt(long element) {
+            return window(element).getInt(offset(element));
+        }
+
+        long getLong(long element) {
+            return window(element).getLong(offset(element));
+        }
+
+        double getDouble(long element) {
+            return window(element).getDouble(offset(element));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.omgcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes best paths for OD pairs in the binary columnar layout of BinaryResultFormat, so downstream jobs can
+ * memory map the result (see BinaryResultReader) rather than parse CSV.
+ * As BestPathWriter, chunks of pairs are prepared in parallel and written in order. Every column but pathNodes has a
+ * size known up front, so each chunk's values are written straight to their place in each column.
+ */
+class BinaryResultWriter {
+    private static final int pairsPerChunk = 16 * 1024;
+
+    private final FloydWarshallOutput output;
+    private final int threads;
+
+    public BinaryResultWriter(FloydWarshallOutput output, int threads) {
+        this.output = output;
+        this.threads = ThreadCount.check(threads);
+    }
+
+    // Returns the number of records with a path.
+    public long write(OdPairs pathsToSave, File outputPath) throws IOException {
+        final int recordCount = pathsToSave.count;
+        final String[] indexToId = output.indexToId;
+
+        byte[][] idBytes = new byte[indexToId.length][];
+        long idByteCount = 0;
+        for (int i = 0; i < indexToId.length; i++) {
+            idBytes[i] = indexToId[i].getBytes(StandardCharsets.UTF_8);
+            idByteCount += idBytes[i].length;
+        }
+
+        final long idOffsetsStart = BinaryResultFormat.headerBytes;
+        final long idBytesStart = idOffsetsStart + 8L * (indexToId.length + 1);
+        final long originsStart = idBytesStart + idByteCount;
+        final long destinationsStart = originsStart + 4L * recordCount;
+        final long distancesStart = destinationsStart + 4L * recordCount;
+        final long pathOffsetsStart = distancesStart + 8L * recordCount;
+        final long pathNodesStart = pathOffsetsStart + 8L * (recordCount + 1);
+
+        long countWithPath = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (RandomAccessFile raf = new RandomAccessFile(outputPath, "rw")) {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            // Id dictionary.
+            ByteBuffer idOffsets = allocate(8 * (indexToId.length + 1));
+            long idOffset = 0;
+            for (byte[] id : idBytes) {
+                idOffsets.putLong(idOffset);
+                idOffset += id.length;
+            }
+            idOffsets.putLong(idOffset);
+            write(channel, idOffsets, idOffsetsStart);
+            long idPosition = idBytesStart;
+            for (byte[] id : idBytes) {
+                ByteBuffer idBuffer = ByteBuffer.wrap(id);
+                idBuffer.position(id.length);
+                write(channel, idBuffer, idPosition);
+                idPosition += id.length;
+            }
+
+            // Records, chunk by chunk in order. pathNodes grows as chunks are written.
+            final int chunkCount = (recordCount + pairsPerChunk - 1) / pairsPerChunk;
+            final int maxInFlight = 2 * threads;
+            ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<Future<Chunk>>();
+            int nextChunk = 0;
+            long pathNodeCount = 0;
+            while ((nextChunk < chunkCount) || !inFlight.isEmpty()) {
+                while ((nextChunk < chunkCount) && (inFlight.size() < maxInFlight)) {
+                    final int start = nextChunk * pairsPerChunk;
+                    final int end = Math.min(recordCount, start + pairsPerChunk);
+                    inFlight.add(pool.submit(() -> prepareChunk(pathsToSave, start, end)));
+                    nextChunk++;
+                }
+
+                Chunk chunk = inFlight.remove().get();
+                write(channel, chunk.origins, originsStart + 4L * chunk.start);
+                write(channel, chunk.destinations, destinationsStart + 4L * chunk.start);
+                write(channel, chunk.distances, distancesStart + 8L * chunk.start);
+                // Chunk path offsets are relative to the chunk, so shift by the nodes written before it.
+                ByteBuffer pathOffsets = allocate(8 * chunk.relativePathOffsets.length);
+                for (int r = 0; r < chunk.relativePathOffsets.length; r++) {
+                    pathOffsets.putLong(pathNodeCount + chunk.relativePathOffsets[r]);
+                }
+                write(channel, pathOffsets, pathOffsetsStart + 8L * chunk.start);
+                write(channel, chunk.pathNodes, pathNodesStart + 4L * pathNodeCount);
+                pathNodeCount += chunk.pathNodes.limit() / 4;
+                countWithPath += chunk.countWithPath;
+            }
+
+            ByteBuffer lastPathOffset = allocate(8);
+            lastPathOffset.putLong(pathNodeCount);
+            write(channel, lastPathOffset, pathOffsetsStart + 8L * recordCount);
+
+            ByteBuffer header = allocate(BinaryResultFormat.headerBytes);
+            header.putLong(BinaryResultFormat.magicOffset, BinaryResultFormat.magic);
+            header.putInt(BinaryResultFormat.versionOffset, BinaryResultFormat.version);
+            header.putInt(BinaryResultFormat.idCountOffset, indexToId.length);
+            header.putLong(BinaryResultFormat.recordCountOffset, recordCount);
+            header.putLong(BinaryResultFormat.idOffsetsStartOffset, idOffsetsStart);
+            header.putLong(BinaryResultFormat.idBytesStartOffset, idBytesStart);
+            header.putLong(BinaryResultFormat.originsStartOffset, originsStart);
+            header.putLong(BinaryResultFormat.destinationsStartOffset, destinationsStart);
+            header.putLong(BinaryResultFormat.distancesStartOffset, distancesStart);
+            header.putLong(BinaryResultFormat.pathOffsetsStartOffset, pathOffsetsStart);
+            header.putLong(BinaryResultFormat.pathNodesStartOffset, pathNodesStart);
+            header.putLong(BinaryResultFormat.pathNodeCountOffset, pathNodeCount);
+            header.position(BinaryResultFormat.headerBytes);
+            write(channel, header, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted writing " + outputPath.getAbsolutePath(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed writing " + outputPath.getAbsolutePath(), e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return countWithPath;
+    }
+
+    private Chunk prepareChunk(OdPairs pathsToSave, int start, int end) {
+        final int count = end - start;
+        Chunk result = new Chunk(start);
+        result.origins = allocate(4 * count);
+        result.destinations = allocate(4 * count);
+        result.distances = allocate(8 * count);
+        result.relativePathOffsets = new long[count];
+
+        int[] pathNodes = new int[4 * count];
+        int pathNodeCount = 0;
+        int[] viaNodes = new int[16];
+        for (int p = start; p < end; p++) {
+            int fromIndex = pathsToSave.originIndex[p];
+            int toIndex = pathsToSave.destinationIndex[p];
+            double distance = output.getBestDistance(fromIndex, toIndex);
+            result.origins.putInt(fromIndex);
+            result.destinations.putInt(toIndex);
+            result.distances.putDouble(distance);
+            result.relativePathOffsets[p - start] = pathNodeCount;
+            if (distance == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            result.countWithPath++;
+
+            // Walk back from the destination, then store in path order.
+            int viaCount = 0;
+            for (int via = output.getPreviousNodeIndex(fromIndex, toIndex);
+                 via != FloydWarshallOutput.nullNodeIndex;
+                 via = output.getPreviousNodeIndex(fromIndex, via)) {
+                if (viaCount == viaNodes.length) {
+                    if (viaCount > output.indexToId.length) {
+                        throw new IllegalStateException(String.format("Cycle in previous nodes from %s to %s",
+                                output.indexToId[fromIndex], output.indexToId[toIndex]));
+                    }
+                    viaNodes = Arrays.copyOf(viaNodes, 2 * viaCount);
+                }
+                viaNodes[viaCount++] = via;
+            }
+            if (pathNodeCount + viaCount > pathNodes.length) {
+                pathNodes = Arrays.copyOf(pathNodes, Math.max(2 * pathNodes.length, pathNodeCount + viaCount));
+            }
+            for (int v = viaCount - 1; v >= 0; v--) {
+                pathNodes[pathNodeCount++] = viaNodes[v];
+            }
+        }
+
+        result.pathNodes = allocate(4 * pathNodeCount);
+        result.pathNodes.asIntBuffer().put(pathNodes, 0, pathNodeCount);
+        result.pathNodes.position(4 * pathNodeCount);
+        return result;
+    }
+
+    private static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocate(bytes).order(BinaryResultFormat.byteOrder);
+    }
+
+    // Writes buffer[0 .. position) at the given file position.
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static class Chunk {
+        final int start;
+        ByteBuffer origins;
+        ByteBuffer destinations;
+        ByteBuffer distances;
+        long[] relativePathOffsets;
+        ByteBuffer pathNodes;
+        long countWithPath;
+
+        Chunk(int start) {
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.omgcodes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Blocked (tiled) Floyd Warshall over row-major matrices.
+ * For each block of intermediate nodes kb, the standard three phases are run:
+ *  1) the diagonal tile (kb, kb)
+ *  2) the tiles in row kb and column kb, which only depend on themselves and the diagonal tile
+ *  3) every other tile (ib, jb), which only depends on tiles (ib, kb) and (kb, jb)
+ * So each tile is only pulled into cache once per block of intermediate nodes, rather than once per node.
+ * Tiles within phase 2 and within phase 3 are independent, so are shared across threads when threads > 1.
+ * Distances match the serial engine, up to rounding from adding lengths in a different order. Each cell sees its
+ * intermediate nodes in a different order to the serial engine though, so where several paths tie for shortest,
+ * which one is kept (and so previousNodeIndex) depends on the block size. So it is not a drop-in for the serial
+ * engine: auto never picks it, and Main only runs it with -allowTieDifferences.
+ */
+class BlockedFloydWarshall {
+    public static final int defaultBlockSize = 64;
+
+    private final Graph graph;
+    private final int blockSize;
+    private final int threads;
+    private final boolean branchFree;
+
+    private ProgressListener progressListener = new LogProgressListener();
+
+    private RowMajorMatrices matrices;
+    private int size;
+    private ProgressTracker tracker;
+
+    public BlockedFloydWarshall(Graph graph, int blockSize, int threads, boolean branchFree) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.graph = graph;
+        this.blockSize = blockSize;
+        this.threads = ThreadCount.check(threads);
+        this.branchFree = branchFree;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public FloydWarshallOutput run() {
+        long startTimeMs = System.currentTimeMillis();
+        final String[] indexToId = graph.indexToId();
+
+        matrices = RowMajorMatrices.seed(graph);
+        matrices.setBranchFree(branchFree);
+        size = matrices.size;
+        System.out.printf("Calculating blocked Floyd - Warshall with %,d elements, block size %d, %d thread(s)%s\n",
+                (long) size * size, blockSize, threads, branchFree ? ", branch free kernel" : "");
+
+        tracker = new ProgressTracker(branchFree ? "blocked-branchFree" : "blocked", size, 0, progressListener);
+        ForkJoinPool pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        try {
+            final int blockCount = (size + blockSize - 1) / blockSize;
+            for (int kb = 0; kb < blockCount; kb++) {
+                // Phase 1 : diagonal tile
+                relaxTile(kb, kb, kb);
+
+                // Phase 2 : rest of the pivot row and column
+                List<Tile> tiles = new ArrayList<Tile>();
+                for (int b = 0; b < blockCount; b++) {
+                    if (b != kb) {
+                        tiles.add(new Tile(kb, b, kb));
+                        tiles.add(new Tile(b, kb, kb));
+                    }
+                }
+                runTiles(pool, tiles);
+
+                // Phase 3 : all remaining tiles
+                tiles.clear();
+                for (int ib = 0; ib < blockCount; ib++) {
+                    for (int jb = 0; (ib != kb) && (jb < blockCount); jb++) {
+                        if (jb != kb) {
+                            tiles.add(new Tile(ib, jb, kb));
+                        }
+                    }
+                }
+                runTiles(pool, tiles);
+                tracker.completed(Math.min(size, (kb + 1) * blockSize));
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        tracker.finish();
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to calculate blocked Floyd Warshall\n", takenMs);
+
+        return new FloydWarshallOutput(indexToId, matrices);
+    }
+
+    // Runs all tiles of a phase, returning once they are all complete.
+    private void runTiles(ForkJoinPool pool, List<Tile> tiles) {
+        if (pool == null) {
+            for (Tile tile : tiles) {
+                tile.compute();
+            }
+        } else {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tiles);
+                }
+            });
+        }
+    }
+
+    private void relaxTile(int ib, int jb, int kb) {
+        int iStart = ib * blockSize;
+        int jStart = jb * blockSize;
+        int kStart = kb * blockSize;
+        tracker.addImprovements(matrices.relax(
+                iStart, Math.min(size, iStart + blockSize),
+                jStart, Math.min(size, jStart + blockSize),
+                kStart, Math.min(size, kStart + blockSize)));
+    }
+
+    private class Tile extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int ib;
+        private final int jb;
+        private final int kb;
+
+        Tile(int ib, int jb, int kb) {
+            this.ib = ib;
+            this.jb = jb;
+            this.kb = kb;
+        }
+
+        @Override
+        protected void compute() {
+            relaxTile(ib, jb, kb);
+        }
+    }
+}
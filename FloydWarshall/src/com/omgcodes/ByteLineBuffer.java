@@ -0,0 +1,119 @@
+package com.omgcodes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Growable byte buffer for building output text without a Formatter or intermediate Strings.
+ * Reused across many lines: clear() keeps the allocated array.
+ */
+class ByteLineBuffer {
+    private static final byte[] lineSeparator = System.lineSeparator().getBytes();
+    private static final long microsPerUnit = 1000000;
+    // Largest value (times 10^6) whose integer and fraction parts are exact in a double.
+    private static final double maxFastScaled = 1L << 52;
+
+    private byte[] bytes;
+    private int length;
+
+    public ByteLineBuffer(int initialCapacity) {
+        bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public void clear() {
+        length = 0;
+    }
+
+    private void ensureSpace(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+
+    public void append(byte b) {
+        ensureSpace(1);
+        bytes[length++] = b;
+    }
+
+    public void append(byte[] b) {
+        ensureSpace(b.length);
+        System.arraycopy(b, 0, bytes, length, b.length);
+        length += b.length;
+    }
+
+    public void appendLineSeparator() {
+        append(lineSeparator);
+    }
+
+    public void appendLong(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                append(Long.toString(value).getBytes());
+                return;
+            }
+            append((byte) '-');
+            value = -value;
+        }
+        ensureSpace(19);
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int d = length + digits - 1; d >= length; d--) {
+            bytes[d] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    // Same text as String.format("%f", value) in an English locale, i.e. 6 decimal places rounded half up.
+    // Formatter rounds the shortest decimal representation of value, which is within half an ulp of value.
+    // So whenever value * 10^6 is clear of a rounding midpoint by more than the error in computing it plus that
+    // half ulp, rounding value directly gives the same digits. Otherwise falls back to the Formatter.
+    public void appendFixed6(double value) {
+        double scaled = value * microsPerUnit;
+        boolean fast = (Double.doubleToRawLongBits(value) >= 0) && (scaled < maxFastScaled);
+        if (fast) {
+            double whole = Math.floor(scaled);
+            double fraction = scaled - whole;
+            double margin = 2 * Math.ulp(scaled) + microsPerUnit * Math.ulp(value);
+            if (Math.abs(fraction - 0.5) > margin) {
+                long micros = (long) whole + ((fraction > 0.5) ? 1 : 0);
+                appendLong(micros / microsPerUnit);
+                append((byte) '.');
+                long fractionMicros = micros % microsPerUnit;
+                ensureSpace(6);
+                for (int d = length + 5; d >= length; d--) {
+                    bytes[d] = (byte) ('0' + (fractionMicros % 10));
+                    fractionMicros /= 10;
+                }
+                length += 6;
+                return;
+            }
+        }
+        append(String.format(Locale.ROOT, "%f", value).getBytes());
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        stream.write(bytes, 0, length);
+    }
+
+    public void writeTo(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.omgcodes;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Row parallel Floyd Warshall (RowParallelDriver phases, as ParallelFloydWarshall) over CompactMatrices, i.e. float distances and narrow
+ * previous node indices. Half the working set of the double engines, at the precision documented on CompactMatrices.
+ */
+class CompactFloydWarshall {
+    private final Graph graph;
+    private final int threads;
+
+    private ProgressListener progressListener = new LogProgressListener();
+
+    private CompactMatrices matrices;
+
+    public CompactFloydWarshall(Graph graph, int threads) {
+        this.graph = graph;
+        this.threads = ThreadCount.check(threads);
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public FloydWarshallOutput run() {
+        long startTimeMs = System.currentTimeMillis();
+        final String[] indexToId = graph.indexToId();
+
+        matrices = CompactMatrices.seed(graph);
+        final int size = matrices.size;
+        System.out.printf("Calculating compact Floyd - Warshall with %,d elements at %d bytes each, %d thread(s)\n",
+                (long) size * size, matrices.bytesPerCell(), threads);
+
+        ProgressTracker tracker = new ProgressTracker("compact", size, 0, progressListener);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int k = 0; k < size; k++) {
+                RowParallelDriver.relaxThrough(size, k, matrices::relaxRows, pool, tracker);
+                tracker.completed(k + 1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        tracker.finish();
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to calculate compact Floyd Warshall\n", takenMs);
+
+        return new FloydWarshallOutput(indexToId, matrices);
+    }
+}
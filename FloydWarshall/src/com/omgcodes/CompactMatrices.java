@@ -0,0 +1,110 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+
+/**
+ * Row-major matrices at reduced precision, to halve memory and memory bandwidth:
+ *  - distances as float rather than double (4 bytes rather than 8)
+ *  - previous node as char (2 bytes) rather than int
+ * So 6 bytes per cell rather than 12.
+ *
+ * Error bound versus the double engines: seeding an arc length rounds it to float, and each addition rounds again,
+ * each with relative error at most 2^-24. Lengths must be non-negative (seed() rejects others), so a best path of
+ * h arcs is reported within a relative error of about (2h - 1) * 2^-24 (~1.2e-7 per step) of its exact length.
+ * Integral lengths with path totals up to 2^24 are exact. Where two paths differ by less than that bound, the other
+ * path may be chosen.
+ */
+class CompactMatrices implements MatrixStore {
+    // Largest size for which size * size still fits in an int array index.
+    public static final int maxSize = RowMajorMatrices.maxSize;
+    // Sentinel for nullNodeIndex, so valid indices are 0 .. 65534. maxSize is well below that, so every node fits.
+    private static final char nullChar = Character.MAX_VALUE;
+
+    public final int size;
+    public final float[] bestDistances;
+    private final char[] previousChars;
+
+    private CompactMatrices(int size) {
+        if (size > maxSize) {
+            throw new IllegalArgumentException(
+                    String.format("%,d nodes is too many for a row-major matrix (max %,d)", size, maxSize));
+        }
+        this.size = size;
+        this.bestDistances = new float[size * size];
+        this.previousChars = new char[size * size];
+    }
+
+    // Throws IllegalArgumentException for a negative length, which the error bound does not cover.
+    public static CompactMatrices seed(Graph graph) {
+        CompactMatrices result = new CompactMatrices(graph.size());
+        Arrays.fill(result.bestDistances, Float.POSITIVE_INFINITY);
+        Arrays.fill(result.previousChars, nullChar);
+
+        final IdTable ids = graph.getIds();
+        for (int i = 0; i < result.size; i++) {
+            for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                if (graph.weights[a] < 0) {
+                    throw new IllegalArgumentException(String.format(
+                            "Compact needs non-negative lengths: %s -> %s is %f",
+                            ids.getId(i), ids.getId(graph.targets[a]), graph.weights[a]));
+                }
+                result.bestDistances[i * result.size + graph.targets[a]] = (float) graph.weights[a];
+            }
+        }
+        return result;
+    }
+
+    public int bytesPerCell() {
+        return Float.BYTES + Character.BYTES;
+    }
+
+    // Relax rows [iStart, iEnd) through intermediate node k. Same comparisons as RowMajorMatrices.relax().
+    // Returns the number of cells improved.
+    public long relaxRows(int iStart, int iEnd, int k) {
+        final int kRow = k * size;
+        long improvements = 0;
+        for (int i = iStart; i < iEnd; i++) {
+            final int iRow = i * size;
+            final float distIToK = bestDistances[iRow + k];
+            if (distIToK == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            for (int j = 0; j < size; j++) {
+                float distKToJ = bestDistances[kRow + j];
+                if (distKToJ != Float.POSITIVE_INFINITY) {
+                    float distIToJViaK = distIToK + distKToJ;
+                    if (distIToJViaK < bestDistances[iRow + j]) {
+                        bestDistances[iRow + j] = distIToJViaK;
+                        char previousKToJ = previousChars[kRow + j];
+                        previousChars[iRow + j] = (previousKToJ == nullChar) ? (char) k : previousKToJ;
+                        improvements++;
+                    }
+                }
+            }
+        }
+        return improvements;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getBestDistance(int i, int j) {
+        return bestDistances[i * size + j];
+    }
+
+    @Override
+    public int getPreviousNodeIndex(int i, int j) {
+        char previous = previousChars[i * size + j];
+        return (previous == nullChar) ? FloydWarshallOutput.nullNodeIndex : previous;
+    }
+
+    @Override
+    public void set(int i, int j, double bestDistance, int previousNodeIndex) {
+        bestDistances[i * size + j] = (float) bestDistance;
+        previousChars[i * size + j] =
+                (previousNodeIndex == FloydWarshallOutput.nullNodeIndex) ? nullChar : (char) previousNodeIndex;
+    }
+}
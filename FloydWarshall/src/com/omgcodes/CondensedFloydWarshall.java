@@ -0,0 +1,335 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * All pairs shortest paths by strongly connected component.
+ * A best path never leaves a component and comes back, so:
+ *  1) Floyd Warshall is run inside each component on its own, costing the sum of |C|^3 rather than N^3
+ *  2) rows are then extended across the condensation DAG, sinks first. A path from u in C to v outside C leaves C
+ *     by some exit arc x -> y, so is the best of dist(u, x) + length(x, y) + dist(y, v) over C's exit arcs,
+ *     where y's row is already final. Pairs with no such path stay +Inf without ever being visited.
+ * Components on the same level of the DAG (the same longest distance to a sink) are independent, so run in parallel.
+ * Gives the same FloydWarshallOutput as the other engines, with previousNodeIndex the last node before j.
+ * Distances match up to floating point rounding, and where paths are exactly equally short another may be chosen.
+ */
+class CondensedFloydWarshall {
+    // Components of at least this many nodes run their own Floyd Warshall row parallel. Smaller ones run one per thread.
+    private static final int parallelComponentSize = 256;
+    // Rows per fork-join leaf task when extending a component's rows.
+    private static final int rowsPerTask = 16;
+
+    private final Graph graph;
+    private final int threads;
+
+    private ProgressListener progressListener = new LogProgressListener();
+
+    private StronglyConnectedComponents components;
+    // Position of each node within its component's members.
+    private int[] localIndex;
+    private double[][] bestDistances;
+    private int[][] previousNodeIndex;
+
+    public CondensedFloydWarshall(Graph graph, int threads) {
+        this.graph = graph;
+        this.threads = ThreadCount.check(threads);
+    }
+
+    // Progress counts rows, each final once its component's level is extended.
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public FloydWarshallOutput run() {
+        long startTimeMs = System.currentTimeMillis();
+        final String[] indexToId = graph.indexToId();
+
+        components = StronglyConnectedComponents.find(graph);
+        final int size = graph.size();
+
+        localIndex = new int[size];
+        int largest = 0;
+        double componentCells = 0;
+        for (int c = 0; c < components.count; c++) {
+            for (int m = components.memberOffsets[c]; m < components.memberOffsets[c + 1]; m++) {
+                localIndex[components.members[m]] = m - components.memberOffsets[c];
+            }
+            largest = Math.max(largest, components.size(c));
+            componentCells += Math.pow(components.size(c), 3);
+        }
+        int[][] levels = levels();
+        System.out.printf("Calculating condensed Floyd - Warshall over %,d components (largest %,d nodes), "
+                        + "%,d levels, %d thread(s). Within components work is %.2f%% of N^3\n",
+                components.count, largest, levels.length, threads, 100 * componentCells / Math.pow(size, 3));
+
+        bestDistances = new double[size][];
+        previousNodeIndex = new int[size][];
+        for (int i = 0; i < size; i++) {
+            bestDistances[i] = new double[size];
+            Arrays.fill(bestDistances[i], Double.POSITIVE_INFINITY);
+            previousNodeIndex[i] = new int[size];
+            Arrays.fill(previousNodeIndex[i], FloydWarshallOutput.nullNodeIndex);
+        }
+
+        ProgressTracker tracker = new ProgressTracker("condensed", "rows", size, progressListener);
+        // Progress is in finished rows. Improvements are not counted.
+        tracker.setImprovementsUncounted();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int c = 0; c < components.count; c++) {
+                if (components.size(c) >= parallelComponentSize) {
+                    solveComponent(c, pool);
+                }
+            }
+            pool.invoke(new ForEach(0, components.count, 1, c -> {
+                if (components.size(c) < parallelComponentSize) {
+                    solveComponent(c, null);
+                }
+            }));
+            long progressMs = System.currentTimeMillis() - startTimeMs;
+            System.out.printf("%,8d[ms] : Solved within components\n", progressMs);
+
+            int finalRows = 0;
+            for (int l = 0; l < levels.length; l++) {
+                final int[] level = levels[l];
+                pool.invoke(new ForEach(0, level.length, 1, c -> extendComponent(level[c])));
+                for (int c : level) {
+                    finalRows += components.size(c);
+                }
+                tracker.completed(finalRows);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        tracker.finish();
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to calculate condensed Floyd Warshall\n", takenMs);
+
+        return new FloydWarshallOutput(indexToId, previousNodeIndex, bestDistances);
+    }
+
+    // Components grouped by their longest distance to a sink in the condensation. Level 0 is the sinks.
+    private int[][] levels() {
+        // Component numbering is reverse topological, so every successor is numbered lower, and done first.
+        int[] levelOf = new int[components.count];
+        int levelCount = 0;
+        for (int c = 0; c < components.count; c++) {
+            int level = 0;
+            for (int m = components.memberOffsets[c]; m < components.memberOffsets[c + 1]; m++) {
+                int node = components.members[m];
+                for (int a = graph.offsets[node]; a < graph.offsets[node + 1]; a++) {
+                    int target = components.componentOf[graph.targets[a]];
+                    if (target != c) {
+                        level = Math.max(level, levelOf[target] + 1);
+                    }
+                }
+            }
+            levelOf[c] = level;
+            levelCount = Math.max(levelCount, level + 1);
+        }
+
+        int[] countByLevel = new int[levelCount];
+        for (int c = 0; c < components.count; c++) {
+            countByLevel[levelOf[c]]++;
+        }
+        int[][] result = new int[levelCount][];
+        for (int l = 0; l < levelCount; l++) {
+            result[l] = new int[countByLevel[l]];
+            countByLevel[l] = 0;
+        }
+        for (int c = 0; c < components.count; c++) {
+            result[levelOf[c]][countByLevel[levelOf[c]]++] = c;
+        }
+        return result;
+    }
+
+    // Floyd Warshall over component c's own arcs, copied into the rows of its members. Row parallel if pool is set.
+    private void solveComponent(int component, ForkJoinPool pool) {
+        final int first = components.memberOffsets[component];
+        final int count = components.size(component);
+        final int[] members = components.members;
+
+        RowMajorMatrices local = RowMajorMatrices.empty(count);
+        for (int l = 0; l < count; l++) {
+            int node = members[first + l];
+            for (int a = graph.offsets[node]; a < graph.offsets[node + 1]; a++) {
+                int target = graph.targets[a];
+                if (components.componentOf[target] == component) {
+                    local.bestDistances[l * count + localIndex[target]] = graph.weights[a];
+                }
+            }
+        }
+
+        for (int k = 0; k < count; k++) {
+            if (pool != null) {
+                ParallelFloydWarshall.relaxThrough(local, k, pool, null);
+            } else {
+                local.relax(0, count, 0, count, k, k + 1);
+            }
+        }
+
+        for (int l = 0; l < count; l++) {
+            double[] distances = bestDistances[members[first + l]];
+            int[] previous = previousNodeIndex[members[first + l]];
+            for (int m = 0; m < count; m++) {
+                int node = members[first + m];
+                distances[node] = local.bestDistances[l * count + m];
+                int localPrevious = local.previousNodeIndex[l * count + m];
+                previous[node] = (localPrevious == FloydWarshallOutput.nullNodeIndex)
+                        ? FloydWarshallOutput.nullNodeIndex
+                        : members[first + localPrevious];
+            }
+        }
+    }
+
+    // Fills in the rows of component c's members for nodes outside c. Rows of all components c reaches are final.
+    private void extendComponent(int component) {
+        final int first = components.memberOffsets[component];
+        final int count = components.size(component);
+        final int[] members = components.members;
+        final int size = graph.size();
+
+        if (count == 1) {
+            // The node's best paths out of the component are just its exit rows.
+            int node = members[first];
+            addExits(node, bestDistances[node], previousNodeIndex[node]);
+            return;
+        }
+
+        // Exit rows: best paths from each member that leave the component by one of its own arcs.
+        final int[] exitNodes = new int[count];
+        int exitCount = 0;
+        for (int m = first; m < first + count; m++) {
+            if (hasExit(members[m])) {
+                exitNodes[exitCount++] = members[m];
+            }
+        }
+        if (exitCount == 0) {
+            return;
+        }
+        // Exit rows are built a batch at a time, one leaf per thread, so however many exits the component has, at
+        // most threads * rowsPerTask of them are held at once. Each member takes the exits in order, batch after
+        // batch, so the result does not depend on the batch size.
+        final int exitsPerBatch = Math.min(exitCount, threads * rowsPerTask);
+        final double[][] exitDistances = new double[exitsPerBatch][size];
+        final int[][] exitPrevious = new int[exitsPerBatch][size];
+        for (int batchStart = 0; batchStart < exitCount; batchStart += exitsPerBatch) {
+            final int from = batchStart;
+            final int to = Math.min(exitCount, batchStart + exitsPerBatch);
+            new ForEach(from, to, rowsPerTask, e -> {
+                Arrays.fill(exitDistances[e - from], Double.POSITIVE_INFINITY);
+                Arrays.fill(exitPrevious[e - from], FloydWarshallOutput.nullNodeIndex);
+                addExits(exitNodes[e], exitDistances[e - from], exitPrevious[e - from]);
+            }).invoke();
+            new ForEach(first, first + count, rowsPerTask,
+                    m -> relaxViaExits(members[m], exitNodes, from, to, exitDistances, exitPrevious)).invoke();
+        }
+    }
+
+    // Each member leaves via the exit node giving the best path, reached by a path within the component.
+    // Relaxes node's row via exitNodes[from, to), whose exit rows are exitDistances / exitPrevious[e - from].
+    private void relaxViaExits(int node, int[] exitNodes, int from, int to,
+                               double[][] exitDistances, int[][] exitPrevious) {
+        final int size = graph.size();
+        double[] distances = bestDistances[node];
+        int[] previous = previousNodeIndex[node];
+        for (int e = from; e < to; e++) {
+            int exitNode = exitNodes[e];
+            double distToExit = (exitNode == node) ? 0.0 : distances[exitNode];
+            if (distToExit == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            double[] fromExit = exitDistances[e - from];
+            int[] previousFromExit = exitPrevious[e - from];
+            for (int j = 0; j < size; j++) {
+                double distExitToJ = fromExit[j];
+                if (distExitToJ != Double.POSITIVE_INFINITY) {
+                    double distViaExit = distToExit + distExitToJ;
+                    if (distViaExit < distances[j]) {
+                        distances[j] = distViaExit;
+                        int previousExitToJ = previousFromExit[j];
+                        previous[j] = (previousExitToJ != FloydWarshallOutput.nullNodeIndex)
+                                ? previousExitToJ
+                                : ((exitNode == node) ? FloydWarshallOutput.nullNodeIndex : exitNode);
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean hasExit(int node) {
+        for (int a = graph.offsets[node]; a < graph.offsets[node + 1]; a++) {
+            if (components.componentOf[graph.targets[a]] != components.componentOf[node]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Relaxes distances / previous, a row from node, with every path starting with one of node's exit arcs.
+    private void addExits(int node, double[] distances, int[] previous) {
+        final int size = graph.size();
+        final int component = components.componentOf[node];
+        for (int a = graph.offsets[node]; a < graph.offsets[node + 1]; a++) {
+            final int target = graph.targets[a];
+            if (components.componentOf[target] == component) {
+                continue;
+            }
+            final double length = graph.weights[a];
+            if (length < distances[target]) {
+                distances[target] = length;
+                previous[target] = FloydWarshallOutput.nullNodeIndex;
+            }
+
+            // target's own entry is the best cycle through it, which never belongs on a path leaving it.
+            final double[] fromTarget = bestDistances[target];
+            final int[] previousFromTarget = previousNodeIndex[target];
+            for (int j = 0; j < size; j++) {
+                double distTargetToJ = fromTarget[j];
+                if ((distTargetToJ != Double.POSITIVE_INFINITY) && (j != target)) {
+                    double distViaTarget = length + distTargetToJ;
+                    if (distViaTarget < distances[j]) {
+                        distances[j] = distViaTarget;
+                        int previousTargetToJ = previousFromTarget[j];
+                        previous[j] = (previousTargetToJ == FloydWarshallOutput.nullNodeIndex)
+                                ? target
+                                : previousTargetToJ;
+                    }
+                }
+            }
+        }
+    }
+
+    // Runs body for each index in [start, end), split into fork-join leaves of at most leafSize indices.
+    private static class ForEach extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final int leafSize;
+        private final IntConsumer body;
+
+        ForEach(int start, int end, int leafSize, IntConsumer body) {
+            this.start = start;
+            this.end = end;
+            this.leafSize = leafSize;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= leafSize) {
+                for (int i = start; i < end; i++) {
+                    body.accept(i);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ForEach(start, middle, leafSize, body), new ForEach(middle, end, leafSize, body));
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.omgcodes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Contraction hierarchy over a Graph, for fast point to point queries (see ContractionHierarchyQuery).
+ * Nodes are contracted one at a time, least important first (by edge difference: shortcuts added less arcs removed,
+ * plus contracted neighbours and hierarchy depth, lazily updated). Contracting v adds a shortcut u -> w for each u -> v -> w with no
+ * witness path of at most the same length avoiding v. Each shortcut records the two arcs it replaces, so query
+ * paths unpack back to original arcs.
+ * The result only depends on the graph, so is saved to a file and reused while the graph fingerprint matches.
+ * Requires non-negative lengths.
+ */
+class ContractionHierarchy {
+    private static final long magic = 0x4F4D474348494552L; // "OMGCHIER"
+    private static final int version = 1;
+    // Witness searches give up after settling this many nodes. A missed witness only costs an unneeded shortcut.
+    private static final int witnessSettleLimit = 500;
+    public static final int noChild = -1;
+
+    public final int size;
+    // Contraction order of each node. Queries only ever move to higher ranks.
+    public final int[] rank;
+
+    // Arc table: the original arcs (deduplicated, as in Graph) followed by shortcuts.
+    // arcFirst / arcSecond are the arcs a shortcut replaces, or noChild for an original arc.
+    public final int arcCount;
+    public final int originalArcCount;
+    public final int[] arcFrom;
+    public final int[] arcTo;
+    public final double[] arcWeight;
+    public final int[] arcFirst;
+    public final int[] arcSecond;
+
+    // Arcs to higher ranked nodes, by origin: upArcs[upOffsets[i] .. upOffsets[i + 1]).
+    public final int[] upOffsets;
+    public final int[] upArcs;
+    // Arcs from higher ranked nodes, by destination, for the backward search.
+    public final int[] downOffsets;
+    public final int[] downArcs;
+    // Original arcs by destination. A cycle back to t is a path to one of these, then the arc.
+    public final int[] inOffsets;
+    public final int[] inArcs;
+
+    private ContractionHierarchy(int size, int[] rank, int arcCount, int originalArcCount,
+                                 int[] arcFrom, int[] arcTo, double[] arcWeight, int[] arcFirst, int[] arcSecond) {
+        this.size = size;
+        this.rank = rank;
+        this.arcCount = arcCount;
+        this.originalArcCount = originalArcCount;
+        this.arcFrom = arcFrom;
+        this.arcTo = arcTo;
+        this.arcWeight = arcWeight;
+        this.arcFirst = arcFirst;
+        this.arcSecond = arcSecond;
+
+        upOffsets = new int[size + 1];
+        downOffsets = new int[size + 1];
+        inOffsets = new int[size + 1];
+        for (int a = 0; a < arcCount; a++) {
+            if (rank[arcTo[a]] > rank[arcFrom[a]]) {
+                upOffsets[arcFrom[a] + 1]++;
+            } else if (rank[arcTo[a]] < rank[arcFrom[a]]) {
+                downOffsets[arcTo[a] + 1]++;
+            }
+            if (a < originalArcCount) {
+                inOffsets[arcTo[a] + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            upOffsets[i + 1] += upOffsets[i];
+            downOffsets[i + 1] += downOffsets[i];
+            inOffsets[i + 1] += inOffsets[i];
+        }
+        upArcs = new int[upOffsets[size]];
+        downArcs = new int[downOffsets[size]];
+        inArcs = new int[inOffsets[size]];
+        int[] nextUp = Arrays.copyOf(upOffsets, size);
+        int[] nextDown = Arrays.copyOf(downOffsets, size);
+        int[] nextIn = Arrays.copyOf(inOffsets, size);
+        for (int a = 0; a < arcCount; a++) {
+            if (rank[arcTo[a]] > rank[arcFrom[a]]) {
+                upArcs[nextUp[arcFrom[a]]++] = a;
+            } else if (rank[arcTo[a]] < rank[arcFrom[a]]) {
+                downArcs[nextDown[arcTo[a]]++] = a;
+            }
+            if (a < originalArcCount) {
+                inArcs[nextIn[arcTo[a]]++] = a;
+            }
+        }
+    }
+
+    public int shortcutCount() {
+        return arcCount - originalArcCount;
+    }
+
+    // Loads the hierarchy for graph from file if it holds one, otherwise builds it and saves it there.
+    public static ContractionHierarchy openOrBuild(Graph graph, File file) throws IOException {
+        ContractionHierarchy result = load(file, graph);
+        if (result != null) {
+            System.out.printf("Loaded contraction hierarchy from %s\n", file.getAbsolutePath());
+            return result;
+        }
+        result = build(graph);
+        result.save(file, graph.fingerprint());
+        System.out.printf("Saved contraction hierarchy to %s\n", file.getAbsolutePath());
+        return result;
+    }
+
+    public static ContractionHierarchy build(Graph graph) {
+        long startTimeMs = System.currentTimeMillis();
+        DijkstraSearch.checkNonNegative(graph);
+        System.out.printf("Building contraction hierarchy for %,d nodes, %,d arcs\n", graph.size(), graph.arcCount());
+
+        ContractionHierarchy result = new Builder(graph).build(startTimeMs);
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to build contraction hierarchy with %,d shortcuts\n",
+                takenMs, result.shortcutCount());
+        return result;
+    }
+
+    // Written to a temporary file then renamed, so an interrupted save never leaves a partial hierarchy.
+    public void save(File file, long fingerprint) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temporary), 1 << 20))) {
+            out.writeLong(magic);
+            out.writeInt(version);
+            out.writeLong(fingerprint);
+            out.writeInt(size);
+            out.writeInt(arcCount);
+            out.writeInt(originalArcCount);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(rank[i]);
+            }
+            for (int a = 0; a < arcCount; a++) {
+                out.writeInt(arcFrom[a]);
+                out.writeInt(arcTo[a]);
+                out.writeDouble(arcWeight[a]);
+                out.writeInt(arcFirst[a]);
+                out.writeInt(arcSecond[a]);
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The hierarchy saved in file, or null if there is none or it was built for a different graph.
+    public static ContractionHierarchy load(File file, Graph graph) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 20))) {
+            if ((in.readLong() != magic) || (in.readInt() != version)
+                    || (in.readLong() != graph.fingerprint()) || (in.readInt() != graph.size())) {
+                return null;
+            }
+            int size = graph.size();
+            int arcCount = in.readInt();
+            int originalArcCount = in.readInt();
+            int[] rank = new int[size];
+            for (int i = 0; i < size; i++) {
+                rank[i] = in.readInt();
+            }
+            int[] arcFrom = new int[arcCount];
+            int[] arcTo = new int[arcCount];
+            double[] arcWeight = new double[arcCount];
+            int[] arcFirst = new int[arcCount];
+            int[] arcSecond = new int[arcCount];
+            for (int a = 0; a < arcCount; a++) {
+                arcFrom[a] = in.readInt();
+                arcTo[a] = in.readInt();
+                arcWeight[a] = in.readDouble();
+                arcFirst[a] = in.readInt();
+                arcSecond[a] = in.readInt();
+            }
+            return new ContractionHierarchy(
+                    size, rank, arcCount, originalArcCount, arcFrom, arcTo, arcWeight, arcFirst, arcSecond);
+        }
+    }
+
+    /**
+     * Contraction state. Each node's in / out arc lists only hold arcs to and from nodes not yet contracted.
+     */
+    private static class Builder {
+        private final int size;
+
+        private int arcCount;
+        private int[] arcFrom;
+        private int[] arcTo;
+        private double[] arcWeight;
+        private int[] arcFirst;
+        private int[] arcSecond;
+
+        private final int[][] outArcs;
+        private final int[] outCount;
+        private final int[][] inArcs;
+        private final int[] inCount;
+
+        private final int[] contractedNeighbours;
+        // One more than the deepest contracted neighbour, so the hierarchy stays shallow and queries short.
+        private final int[] depth;
+        private final double[] priorities;
+
+        // Witness search workspace. witnessDistances is +Inf except for the touched nodes of the current search.
+        private final double[] witnessDistances;
+        private final IndexedMinHeap witnessHeap;
+        private int[] touched = new int[64];
+        private int touchedCount;
+
+        Builder(Graph graph) {
+            size = graph.size();
+            int capacity = Math.max(16, 2 * graph.arcCount());
+            arcFrom = new int[capacity];
+            arcTo = new int[capacity];
+            arcWeight = new double[capacity];
+            arcFirst = new int[capacity];
+            arcSecond = new int[capacity];
+
+            outArcs = new int[size][];
+            outCount = new int[size];
+            inArcs = new int[size][];
+            inCount = new int[size];
+            for (int i = 0; i < size; i++) {
+                outArcs[i] = new int[4];
+                inArcs[i] = new int[4];
+            }
+            for (int i = 0; i < size; i++) {
+                for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                    int arc = addArc(i, graph.targets[a], graph.weights[a], noChild, noChild);
+                    // Self loops only matter for cycles, which queries take from the original arcs.
+                    if (graph.targets[a] != i) {
+                        addToList(outArcs, outCount, i, arc);
+                        addToList(inArcs, inCount, graph.targets[a], arc);
+                    }
+                }
+            }
+
+            contractedNeighbours = new int[size];
+            depth = new int[size];
+            priorities = new double[size];
+            witnessDistances = new double[size];
+            Arrays.fill(witnessDistances, Double.POSITIVE_INFINITY);
+            witnessHeap = new IndexedMinHeap(size);
+        }
+
+        ContractionHierarchy build(long startTimeMs) {
+            final int originalArcCount = arcCount;
+
+            IndexedMinHeap order = new IndexedMinHeap(size);
+            order.reset(priorities);
+            for (int v = 0; v < size; v++) {
+                priorities[v] = priority(v);
+                order.insertOrDecrease(v);
+            }
+
+            int[] rank = new int[size];
+            int nextRank = 0;
+            while (!order.isEmpty()) {
+                int v = order.removeMin();
+                // Lazy update: contracting neighbours may have made v more important since it was queued.
+                double priority = priority(v);
+                if (!order.isEmpty() && (priority > priorities[order.peekMin()])) {
+                    priorities[v] = priority;
+                    order.insertOrDecrease(v);
+                    continue;
+                }
+
+                if ((nextRank % 100000) == 0) {
+                    long progressMs = System.currentTimeMillis() - startTimeMs;
+                    System.out.printf("%,8d[ms] : Contracted %,d nodes, %,d shortcuts\n",
+                            progressMs, nextRank, arcCount - originalArcCount);
+                }
+                contract(v, false);
+                rank[v] = nextRank++;
+            }
+
+            return new ContractionHierarchy(size, rank, arcCount, originalArcCount,
+                    Arrays.copyOf(arcFrom, arcCount), Arrays.copyOf(arcTo, arcCount),
+                    Arrays.copyOf(arcWeight, arcCount),
+                    Arrays.copyOf(arcFirst, arcCount), Arrays.copyOf(arcSecond, arcCount));
+        }
+
+        private double priority(int v) {
+            int shortcuts = contract(v, true);
+            return 2 * (shortcuts - (inCount[v] + outCount[v])) + contractedNeighbours[v] + depth[v];
+        }
+
+        // Returns the number of shortcuts contracting v needs. Only adds them and removes v if not simulating.
+        private int contract(int v, boolean simulate) {
+            int shortcuts = 0;
+            for (int i = 0; i < inCount[v]; i++) {
+                final int inArc = inArcs[v][i];
+                final int u = arcFrom[inArc];
+                double maxOut = Double.NEGATIVE_INFINITY;
+                for (int o = 0; o < outCount[v]; o++) {
+                    if (arcTo[outArcs[v][o]] != u) {
+                        maxOut = Math.max(maxOut, arcWeight[outArcs[v][o]]);
+                    }
+                }
+                if (maxOut == Double.NEGATIVE_INFINITY) {
+                    continue;
+                }
+
+                witnessSearch(u, v, arcWeight[inArc] + maxOut);
+                for (int o = 0; o < outCount[v]; o++) {
+                    final int outArc = outArcs[v][o];
+                    final int w = arcTo[outArc];
+                    if (w == u) {
+                        continue;
+                    }
+                    double viaV = arcWeight[inArc] + arcWeight[outArc];
+                    if (witnessDistances[w] > viaV) {
+                        shortcuts++;
+                        if (!simulate) {
+                            addShortcut(u, w, viaV, inArc, outArc);
+                        }
+                    }
+                }
+                clearWitnessSearch();
+            }
+
+            if (!simulate) {
+                for (int i = 0; i < inCount[v]; i++) {
+                    int u = arcFrom[inArcs[v][i]];
+                    removeFromList(outArcs, outCount, u, inArcs[v][i]);
+                    contractedNeighbours[u]++;
+                    depth[u] = Math.max(depth[u], depth[v] + 1);
+                }
+                for (int o = 0; o < outCount[v]; o++) {
+                    int w = arcTo[outArcs[v][o]];
+                    removeFromList(inArcs, inCount, w, outArcs[v][o]);
+                    contractedNeighbours[w]++;
+                    depth[w] = Math.max(depth[w], depth[v] + 1);
+                }
+                inCount[v] = 0;
+                outCount[v] = 0;
+            }
+            return shortcuts;
+        }
+
+        // Replaces an existing longer u -> w arc, rather than adding a parallel one.
+        private void addShortcut(int u, int w, double weight, int first, int second) {
+            for (int o = 0; o < outCount[u]; o++) {
+                int arc = outArcs[u][o];
+                if (arcTo[arc] == w) {
+                    if (weight < arcWeight[arc]) {
+                        arcWeight[arc] = weight;
+                        arcFirst[arc] = first;
+                        arcSecond[arc] = second;
+                    }
+                    return;
+                }
+            }
+            int arc = addArc(u, w, weight, first, second);
+            addToList(outArcs, outCount, u, arc);
+            addToList(inArcs, inCount, w, arc);
+        }
+
+        // Dijkstra from source over uncontracted nodes, avoiding excluded, until past maxDistance or the settle limit.
+        private void witnessSearch(int source, int excluded, double maxDistance) {
+            witnessHeap.reset(witnessDistances);
+            touch(source);
+            witnessDistances[source] = 0.0;
+            witnessHeap.insertOrDecrease(source);
+            int settled = 0;
+            while (!witnessHeap.isEmpty() && (settled < witnessSettleLimit)) {
+                final int node = witnessHeap.removeMin();
+                final double distToNode = witnessDistances[node];
+                if (distToNode > maxDistance) {
+                    break;
+                }
+                settled++;
+                for (int o = 0; o < outCount[node]; o++) {
+                    final int arc = outArcs[node][o];
+                    final int target = arcTo[arc];
+                    if (target == excluded) {
+                        continue;
+                    }
+                    double distViaNode = distToNode + arcWeight[arc];
+                    if (distViaNode < witnessDistances[target]) {
+                        if (witnessDistances[target] == Double.POSITIVE_INFINITY) {
+                            touch(target);
+                        }
+                        witnessDistances[target] = distViaNode;
+                        witnessHeap.insertOrDecrease(target);
+                    }
+                }
+            }
+        }
+
+        private void touch(int node) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, 2 * touchedCount);
+            }
+            touched[touchedCount++] = node;
+        }
+
+        private void clearWitnessSearch() {
+            for (int t = 0; t < touchedCount; t++) {
+                witnessDistances[touched[t]] = Double.POSITIVE_INFINITY;
+            }
+            touchedCount = 0;
+        }
+
+        private int addArc(int from, int to, double weight, int first, int second) {
+            if (arcCount == arcFrom.length) {
+                int capacity = arcCount + (arcCount >> 1);
+                arcFrom = Arrays.copyOf(arcFrom, capacity);
+                arcTo = Arrays.copyOf(arcTo, capacity);
+                arcWeight = Arrays.copyOf(arcWeight, capacity);
+                arcFirst = Arrays.copyOf(arcFirst, capacity);
+                arcSecond = Arrays.copyOf(arcSecond, capacity);
+            }
+            arcFrom[arcCount] = from;
+            arcTo[arcCount] = to;
+            arcWeight[arcCount] = weight;
+            arcFirst[arcCount] = first;
+            arcSecond[arcCount] = second;
+            return arcCount++;
+        }
+
+        private static void addToList(int[][] lists, int[] counts, int node, int arc) {
+            if (counts[node] == lists[node].length) {
+                lists[node] = Arrays.copyOf(lists[node], 2 * counts[node]);
+            }
+            lists[node][counts[node]++] = arc;
+        }
+
+        private static void removeFromList(int[][] lists, int[] counts, int node, int arc) {
+            int[] list = lists[node];
+            for (int i = 0; i < counts[node]; i++) {
+                if (list[i] == arc) {
+                    list[i] = list[--counts[node]];
+                    return;
+                }
+            }
+        }
+    }
+}
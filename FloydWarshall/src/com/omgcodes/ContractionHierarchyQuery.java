@@ -0,0 +1,223 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+
+/**
+ * Bidirectional point to point search over a ContractionHierarchy: a forward search from the origin up arcs to
+ * higher ranked nodes, and a backward search from the destination up arcs from higher ranked nodes, meeting at the
+ * highest ranked node of the best path. Each direction stops once its next node is no closer than the best meeting.
+ * As the other engines, a query from a node to itself gives the shortest cycle back to it: the backward search then
+ * starts from the node's in arcs, rather than from the node at 0.
+ * Not thread safe. Keep one instance per thread, and reuse it for many queries.
+ */
+class ContractionHierarchyQuery {
+    private static final int noArc = -1;
+
+    private final ContractionHierarchy hierarchy;
+
+    // Distances are +Inf except for the touched nodes of the current query. Parent arcs are only valid when touched.
+    private final double[] forwardDistances;
+    private final int[] forwardParents;
+    private final double[] backwardDistances;
+    private final int[] backwardParents;
+    private final IndexedMinHeap forwardHeap;
+    private final IndexedMinHeap backwardHeap;
+    private int[] touched = new int[64];
+    private int touchedCount;
+
+    private int origin;
+    private int destination;
+    private int meetingNode;
+
+    // Via nodes of the last path unpacked, in reverse path order (last node first), as BestPathWriter.appendLine.
+    private int[] viaNodes = new int[16];
+    private int viaCount;
+    // Arcs still to unpack, last pushed first.
+    private int[] unpackStack = new int[64];
+    private int[] pathArcs = new int[64];
+
+    public ContractionHierarchyQuery(ContractionHierarchy hierarchy) {
+        this.hierarchy = hierarchy;
+        final int size = hierarchy.size;
+        forwardDistances = new double[size];
+        forwardParents = new int[size];
+        backwardDistances = new double[size];
+        backwardParents = new int[size];
+        Arrays.fill(forwardDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(backwardDistances, Double.POSITIVE_INFINITY);
+        forwardHeap = new IndexedMinHeap(size);
+        backwardHeap = new IndexedMinHeap(size);
+    }
+
+    // Best distance from origin to destination, or +Inf if there is no path.
+    public double search(int origin, int destination) {
+        for (int t = 0; t < touchedCount; t++) {
+            forwardDistances[touched[t]] = Double.POSITIVE_INFINITY;
+            backwardDistances[touched[t]] = Double.POSITIVE_INFINITY;
+        }
+        touchedCount = 0;
+        forwardHeap.reset(forwardDistances);
+        backwardHeap.reset(backwardDistances);
+        this.origin = origin;
+        this.destination = destination;
+        meetingNode = -1;
+
+        final int[] arcFrom = hierarchy.arcFrom;
+        final int[] arcTo = hierarchy.arcTo;
+        final double[] arcWeight = hierarchy.arcWeight;
+
+        reach(forwardDistances, forwardParents, forwardHeap, origin, 0.0, noArc);
+        if (origin != destination) {
+            reach(backwardDistances, backwardParents, backwardHeap, destination, 0.0, noArc);
+        } else {
+            for (int i = hierarchy.inOffsets[destination]; i < hierarchy.inOffsets[destination + 1]; i++) {
+                int arc = hierarchy.inArcs[i];
+                reach(backwardDistances, backwardParents, backwardHeap, arcFrom[arc], arcWeight[arc], arc);
+            }
+        }
+
+        double best = Double.POSITIVE_INFINITY;
+        boolean forwardTurn = true;
+        while (true) {
+            boolean forwardDone = forwardHeap.isEmpty() || (forwardDistances[forwardHeap.peekMin()] >= best);
+            boolean backwardDone = backwardHeap.isEmpty() || (backwardDistances[backwardHeap.peekMin()] >= best);
+            if (forwardDone && backwardDone) {
+                break;
+            }
+            boolean forward = !forwardDone && (forwardTurn || backwardDone);
+            forwardTurn = !forwardTurn;
+
+            if (forward) {
+                final int node = forwardHeap.removeMin();
+                final double distToNode = forwardDistances[node];
+                if (distToNode + backwardDistances[node] < best) {
+                    best = distToNode + backwardDistances[node];
+                    meetingNode = node;
+                }
+                if (isForwardStalled(node, distToNode)) {
+                    continue;
+                }
+                for (int i = hierarchy.upOffsets[node]; i < hierarchy.upOffsets[node + 1]; i++) {
+                    int arc = hierarchy.upArcs[i];
+                    reach(forwardDistances, forwardParents, forwardHeap, arcTo[arc], distToNode + arcWeight[arc], arc);
+                }
+            } else {
+                final int node = backwardHeap.removeMin();
+                final double distFromNode = backwardDistances[node];
+                if (forwardDistances[node] + distFromNode < best) {
+                    best = forwardDistances[node] + distFromNode;
+                    meetingNode = node;
+                }
+                if (isBackwardStalled(node, distFromNode)) {
+                    continue;
+                }
+                for (int i = hierarchy.downOffsets[node]; i < hierarchy.downOffsets[node + 1]; i++) {
+                    int arc = hierarchy.downArcs[i];
+                    reach(backwardDistances, backwardParents, backwardHeap,
+                            arcFrom[arc], distFromNode + arcWeight[arc], arc);
+                }
+            }
+        }
+        return best;
+    }
+
+    // Stall on demand: if a higher ranked node already reached gives a shorter way into node, node is not on a
+    // best path with this distance, so its arcs need not be followed.
+    private boolean isForwardStalled(int node, double distToNode) {
+        for (int i = hierarchy.downOffsets[node]; i < hierarchy.downOffsets[node + 1]; i++) {
+            int arc = hierarchy.downArcs[i];
+            if (forwardDistances[hierarchy.arcFrom[arc]] + hierarchy.arcWeight[arc] < distToNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isBackwardStalled(int node, double distFromNode) {
+        for (int i = hierarchy.upOffsets[node]; i < hierarchy.upOffsets[node + 1]; i++) {
+            int arc = hierarchy.upArcs[i];
+            if (hierarchy.arcWeight[arc] + backwardDistances[hierarchy.arcTo[arc]] < distFromNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reach(double[] distances, int[] parents, IndexedMinHeap heap, int node, double distance, int arc) {
+        if (distance < distances[node]) {
+            if ((forwardDistances[node] == Double.POSITIVE_INFINITY)
+                    && (backwardDistances[node] == Double.POSITIVE_INFINITY)) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, 2 * touchedCount);
+                }
+                touched[touchedCount++] = node;
+            }
+            distances[node] = distance;
+            parents[node] = arc;
+            heap.insertOrDecrease(node);
+        }
+    }
+
+    // Unpacks the path found by the last search into original arcs. Returns the number of via nodes,
+    // which getViaNodes() then holds in reverse path order. Only valid if the search found a path.
+    public int unpackViaNodes() {
+        // Arcs of the path through the hierarchy: forward from the origin to the meeting node, then backward.
+        int pathArcCount = 0;
+        for (int node = meetingNode; node != origin; ) {
+            int arc = forwardParents[node];
+            pathArcs = ensureCapacity(pathArcs, pathArcCount + 1);
+            pathArcs[pathArcCount++] = arc;
+            node = hierarchy.arcFrom[arc];
+        }
+        reverse(pathArcs, pathArcCount);
+        // For a cycle the backward search started from the destination's in arcs, so the walk is only over once it
+        // has reached the destination again, through one of them.
+        int steps = 0;
+        for (int node = meetingNode; (node != destination) || ((origin == destination) && (steps == 0)); steps++) {
+            int arc = backwardParents[node];
+            pathArcs = ensureCapacity(pathArcs, pathArcCount + 1);
+            pathArcs[pathArcCount++] = arc;
+            node = hierarchy.arcTo[arc];
+        }
+
+        // Each original arc's destination is the next node on the path. The last is the destination itself.
+        viaCount = 0;
+        for (int p = pathArcCount - 1; p >= 0; p--) {
+            int stackSize = 0;
+            unpackStack = ensureCapacity(unpackStack, 1);
+            unpackStack[stackSize++] = pathArcs[p];
+            while (stackSize > 0) {
+                int arc = unpackStack[--stackSize];
+                if (hierarchy.arcFirst[arc] == ContractionHierarchy.noChild) {
+                    viaNodes = ensureCapacity(viaNodes, viaCount + 1);
+                    viaNodes[viaCount++] = hierarchy.arcTo[arc];
+                } else {
+                    // Nodes are collected last first, so the second half of the shortcut is unpacked first.
+                    unpackStack = ensureCapacity(unpackStack, stackSize + 2);
+                    unpackStack[stackSize++] = hierarchy.arcFirst[arc];
+                    unpackStack[stackSize++] = hierarchy.arcSecond[arc];
+                }
+            }
+        }
+        // Drop the destination, which was collected first.
+        System.arraycopy(viaNodes, 1, viaNodes, 0, viaCount - 1);
+        viaCount--;
+        return viaCount;
+    }
+
+    public int[] getViaNodes() {
+        return viaNodes;
+    }
+
+    private static int[] ensureCapacity(int[] array, int capacity) {
+        return (capacity <= array.length) ? array : Arrays.copyOf(array, Math.max(capacity, 2 * array.length));
+    }
+
+    private static void reverse(int[] array, int count) {
+        for (int lo = 0, hi = count - 1; lo < hi; lo++, hi--) {
+            int value = array[lo];
+            array[lo] = array[hi];
+            array[hi] = value;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.omgcodes;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * All pairs shortest paths for sparse graphs, by running a Dijkstra search from every source in parallel.
+ * O(N * E * log(N)) rather than O(N^3), so much faster when arcs are a small multiple of nodes.
+ * Distances match Floyd Warshall up to floating point rounding. Where two paths are exactly equally short,
+ * a different (but equally short) path may be chosen. Requires non-negative lengths.
+ */
+class DijkstraAllPairs {
+    // Sources per fork-join leaf task. Each leaf allocates one search workspace.
+    private static final int sourcesPerTask = 64;
+
+    private final Graph graph;
+    private final int threads;
+
+    private ProgressListener progressListener = new LogProgressListener();
+
+    private double[][] bestDistances;
+    private int[][] previousNodeIndex;
+
+    public DijkstraAllPairs(Graph graph, int threads) {
+        this.graph = graph;
+        this.threads = ThreadCount.check(threads);
+    }
+
+    // Rough cost model: Dijkstra from every source ~ N * (E + N) * log(N) heap operations, against N^3 for
+    // Floyd Warshall. Heap operations are several times dearer than a Floyd Warshall cell.
+    public static boolean isSparse(Graph graph) {
+        final double heapOperationCost = 4.0;
+        double size = graph.size();
+        double log2Size = Math.max(1.0, Math.log(size) / Math.log(2));
+        return heapOperationCost * (graph.arcCount() + size) * log2Size < size * size;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public FloydWarshallOutput run() {
+        long startTimeMs = System.currentTimeMillis();
+        final String[] indexToId = graph.indexToId();
+
+        DijkstraSearch.checkNonNegative(graph);
+        final int size = graph.size();
+        System.out.printf("Calculating Dijkstra from %,d sources over %,d arcs, %d thread(s)\n",
+                size, graph.arcCount(), threads);
+
+        bestDistances = new double[size][];
+        previousNodeIndex = new int[size][];
+
+        // Sources are searched in batches, so progress is reported from this thread between them. A batch has a
+        // few leaves per thread, so threads are rarely left idle at the end of one.
+        final int sourcesPerBatch = Math.max(ProgressTracker.reportEvery, 4 * threads * sourcesPerTask);
+        ProgressTracker tracker = new ProgressTracker("dijkstra", "sources", size, progressListener);
+        // Searches do not count improvements.
+        tracker.setImprovementsUncounted();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int start = 0; start < size; start += sourcesPerBatch) {
+                int end = Math.min(size, start + sourcesPerBatch);
+                pool.invoke(new SourceRange(start, end));
+                tracker.completed(end);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        tracker.finish();
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to calculate all pairs Dijkstra\n", takenMs);
+
+        return new FloydWarshallOutput(indexToId, previousNodeIndex, bestDistances);
+    }
+
+    private class SourceRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+
+        SourceRange(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= sourcesPerTask) {
+                DijkstraSearch search = new DijkstraSearch(graph);
+                for (int source = start; source < end; source++) {
+                    double[] distances = new double[graph.size()];
+                    int[] previous = new int[graph.size()];
+                    search.run(source, distances, previous);
+                    bestDistances[source] = distances;
+                    previousNodeIndex[source] = previous;
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new SourceRange(start, middle), new SourceRange(middle, end));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+
+/**
+ * Single source Dijkstra over a Graph, giving one row of the Floyd Warshall result:
+ *  - bestDistances[source] is the shortest cycle back to source, not 0, as Floyd Warshall seeds the diagonal with +Inf
+ *  - previousNodeIndex[j] is the last node before j, or nullNodeIndex for a direct link / no path
+ * Not thread safe. Keep one instance per thread, and reuse it for many sources.
+ */
+class DijkstraSearch {
+    private final Graph graph;
+    private final IndexedMinHeap heap;
+
+    // targetMarks[node] == markGeneration when node is a target of the current early exit search.
+    private int[] targetMarks;
+    private int markGeneration;
+
+    public DijkstraSearch(Graph graph) {
+        this.graph = graph;
+        this.heap = new IndexedMinHeap(graph.size());
+    }
+
+    public static void checkNonNegative(Graph graph) {
+        final IdTable ids = graph.getIds();
+        for (int i = 0; i < graph.size(); i++) {
+            for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                if (graph.weights[a] < 0) {
+                    throw new IllegalArgumentException(String.format("Dijkstra needs non-negative lengths: %s -> %s is %f",
+                            ids.getId(i), ids.getId(graph.targets[a]), graph.weights[a]));
+                }
+            }
+        }
+    }
+
+    public void run(int source, double[] bestDistances, int[] previousNodeIndex) {
+        search(source, bestDistances, previousNodeIndex, 0);
+    }
+
+    // As run(), but stops as soon as targets[0 .. targetCount) are all settled.
+    // Only the entries for those targets (and the nodes on their best paths) are then final.
+    public void runToTargets(int source, double[] bestDistances, int[] previousNodeIndex,
+                             int[] targets, int targetCount) {
+        if (targetMarks == null) {
+            targetMarks = new int[graph.size()];
+        }
+        markGeneration++;
+        int distinctTargets = 0;
+        for (int t = 0; t < targetCount; t++) {
+            if (targetMarks[targets[t]] != markGeneration) {
+                targetMarks[targets[t]] = markGeneration;
+                distinctTargets++;
+            }
+        }
+        search(source, bestDistances, previousNodeIndex, distinctTargets);
+    }
+
+    // Stops once targetsRemaining marked targets are settled, or runs to completion if targetsRemaining == 0.
+    private void search(int source, double[] bestDistances, int[] previousNodeIndex, int targetsRemaining) {
+        final boolean stopAtTargets = targetsRemaining > 0;
+        final int[] offsets = graph.offsets;
+        final int[] targets = graph.targets;
+        final double[] weights = graph.weights;
+
+        Arrays.fill(bestDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(previousNodeIndex, FloydWarshallOutput.nullNodeIndex);
+        heap.reset(bestDistances);
+
+        // Seed with direct arcs. The source itself is only reached again via a cycle.
+        for (int a = offsets[source]; a < offsets[source + 1]; a++) {
+            int target = targets[a];
+            if (weights[a] < bestDistances[target]) {
+                bestDistances[target] = weights[a];
+                heap.insertOrDecrease(target);
+            }
+        }
+
+        while (!heap.isEmpty()) {
+            final int node = heap.removeMin();
+            if (stopAtTargets && (targetMarks[node] == markGeneration)) {
+                targetsRemaining--;
+                if (targetsRemaining == 0) {
+                    return;
+                }
+            }
+            final double distToNode = bestDistances[node];
+            for (int a = offsets[node]; a < offsets[node + 1]; a++) {
+                int target = targets[a];
+                double distViaNode = distToNode + weights[a];
+                if (distViaNode < bestDistances[target]) {
+                    bestDistances[target] = distViaNode;
+                    previousNodeIndex[target] = node;
+                    heap.insertOrDecrease(target);
+                }
+            }
+        }
+    }
+}
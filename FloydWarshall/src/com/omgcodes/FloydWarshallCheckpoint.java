@@ -0,0 +1,136 @@
+package com.omgcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Checkpoint of a row-major Floyd Warshall run part way through: the matrices after intermediate nodes 0 .. nextK - 1.
+ * File layout: a headerBytes header, then bestDistances as doubles, then previousNodeIndex as ints, native byte order.
+ * Written through a temporary file that is then renamed over the previous checkpoint, so a run killed mid write
+ * still has the previous checkpoint to resume from. Data is copied through one large direct buffer, so the write is
+ * sequential large block I/O.
+ */
+class FloydWarshallCheckpoint {
+    private static final long magic = 0x4F4D474657434B50L; // "OMGFWCKP"
+    private static final int version = 1;
+    private static final int headerBytes = 64;
+    private static final int bufferBytes = 8 << 20;
+
+    public final RowMajorMatrices matrices;
+    // First intermediate node not yet relaxed.
+    public final int nextK;
+
+    private FloydWarshallCheckpoint(RowMajorMatrices matrices, int nextK) {
+        this.matrices = matrices;
+        this.nextK = nextK;
+    }
+
+    public static void save(File file, RowMajorMatrices matrices, long fingerprint, int nextK) throws IOException {
+        final int size = matrices.size;
+        final long cells = (long) size * size;
+        File temporary = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temporary, "rw")) {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.nativeOrder());
+
+            buffer.putLong(magic);
+            buffer.putInt(version);
+            buffer.putInt(size);
+            buffer.putLong(fingerprint);
+            buffer.putInt(nextK);
+            buffer.position(headerBytes);
+
+            for (long c = 0; c < cells; ) {
+                int count = (int) Math.min(cells - c, buffer.remaining() / Double.BYTES);
+                if (count == 0) {
+                    drain(channel, buffer);
+                    continue;
+                }
+                buffer.asDoubleBuffer().put(matrices.bestDistances, (int) c, count);
+                buffer.position(buffer.position() + count * Double.BYTES);
+                c += count;
+            }
+            for (long c = 0; c < cells; ) {
+                int count = (int) Math.min(cells - c, buffer.remaining() / Integer.BYTES);
+                if (count == 0) {
+                    drain(channel, buffer);
+                    continue;
+                }
+                buffer.asIntBuffer().put(matrices.previousNodeIndex, (int) c, count);
+                buffer.position(buffer.position() + count * Integer.BYTES);
+                c += count;
+            }
+            drain(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(temporary.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // The checkpoint in file, or null if there is none or it is for a different graph.
+    public static FloydWarshallCheckpoint load(File file, int size, long fingerprint) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        final long cells = (long) size * size;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            if (channel.size() != headerBytes + cells * (Double.BYTES + Integer.BYTES)) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferBytes).order(ByteOrder.nativeOrder());
+            buffer.limit(headerBytes);
+            fill(channel, buffer);
+            if ((buffer.getLong(0) != magic) || (buffer.getInt(8) != version)
+                    || (buffer.getInt(12) != size) || (buffer.getLong(16) != fingerprint)) {
+                return null;
+            }
+            int nextK = buffer.getInt(24);
+
+            RowMajorMatrices matrices = RowMajorMatrices.empty(size);
+            for (long c = 0; c < cells; ) {
+                int count = (int) Math.min(cells - c, bufferBytes / Double.BYTES);
+                buffer.clear();
+                buffer.limit(count * Double.BYTES);
+                fill(channel, buffer);
+                buffer.asDoubleBuffer().get(matrices.bestDistances, (int) c, count);
+                c += count;
+            }
+            for (long c = 0; c < cells; ) {
+                int count = (int) Math.min(cells - c, bufferBytes / Integer.BYTES);
+                buffer.clear();
+                buffer.limit(count * Integer.BYTES);
+                fill(channel, buffer);
+                buffer.asIntBuffer().get(matrices.previousNodeIndex, (int) c, count);
+                c += count;
+            }
+            return new FloydWarshallCheckpoint(matrices, nextK);
+        }
+    }
+
+    // Writes buffer[0 .. position) and clears it.
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Reads until buffer is full to its limit, then flips it for reading.
+    private static void fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of checkpoint");
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -3,25 +3,36 @@ package com.omgcodes;
 /**
  * Created by owen.griffiths on 02-May-17.
  * Container class to hold output of Floyd Warshall Calculation. No logic.
+ * The matrices themselves are held by a MatrixStore, so can be on or off heap.
  */
 public class FloydWarshallOutput {
     public static final int nullNodeIndex = -1;
 
     public final String[] indexToId;
 
-    // previousNodeIndex[i][j] Stores index of last node on best path from i to j.
-    // nullNodeIndex if there is a direct link, or if no path exists.
-    public final int[][] previousNodeIndex;
+    // Package private, as MatrixStore is. Read through getBestDistance() and getPreviousNodeIndex().
+    private final MatrixStore store;
 
-    // bestDistances[i][j] stores the length of the best path from i to j.
-    public final double[][] bestDistances;
+    FloydWarshallOutput(String[] indexToId, MatrixStore store) {
+        this.indexToId = indexToId;
+        this.store = store;
+    }
 
     public FloydWarshallOutput(
             String[] indexToId,
             int[][] previousNodeIndex,
             double[][] bestDistances) {
-        this.indexToId = indexToId;
-        this.previousNodeIndex = previousNodeIndex;
-        this.bestDistances = bestDistances;
+        this(indexToId, new ArrayMatrixStore(previousNodeIndex, bestDistances));
+    }
+
+    // Stores the length of the best path from i to j.
+    public double getBestDistance(int i, int j) {
+        return store.getBestDistance(i, j);
+    }
+
+    // Stores index of last node on best path from i to j.
+    // nullNodeIndex if there is a direct link, or if no path exists.
+    public int getPreviousNodeIndex(int i, int j) {
+        return store.getPreviousNodeIndex(i, j);
     }
 }
@@ -3,35 +3,181 @@ package com.omgcodes;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
  * Created by owen.griffiths on 02-May-17.
+ * Directed graph over interned ids, held in compressed sparse row form, with no per arc objects:
+ * the arcs leaving node i are targets[offsets[i]] .. targets[offsets[i + 1] - 1], with matching weights,
+ * in input order. Arcs are identified by their position in targets / weights.
+ * Duplicate arcs between the same pair of nodes keep the last one in the input, as every engine always has.
  */
 class Graph {
-    private final Map<String, Integer> idToIndex;
-    private final Arc[] arcs;
+    private final IdTable ids;
+    public final int[] offsets;
+    public final int[] targets;
+    public final double[] weights;
+
+    private Graph(IdTable ids, int[] offsets, int[] targets, double[] weights) {
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    // Builds the graph of arcs between the nodes of ids.
+    public static Graph build(IdTable ids, ArcList arcs) {
+        final int size = ids.size();
+        final int arcCount = arcs.size();
 
-    public Graph(Map<String, Integer> idToIndex, Arc[] arcs) {
-        this.idToIndex = idToIndex;
-        this.arcs = arcs;
+        // Counting sort of arcs by origin, keeping input order within each origin.
+        int[] offsets = new int[size + 1];
+        for (int a = 0; a < arcCount; a++) {
+            offsets[arcs.originIndex(a) + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] sorted = new int[arcCount];
+        int[] next = Arrays.copyOf(offsets, size);
+        for (int a = 0; a < arcCount; a++) {
+            sorted[next[arcs.originIndex(a)]++] = a;
+        }
+        next = null;
+
+        // Walk each origin's arcs last to first, so the first time a destination is seen is its last occurrence.
+        int[] targets = new int[arcCount];
+        double[] weights = new double[arcCount];
+        int[] seenFrom = new int[size];
+        Arrays.fill(seenFrom, -1);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int start = count;
+            for (int s = offsets[i + 1] - 1; s >= offsets[i]; s--) {
+                int a = sorted[s];
+                int destination = arcs.destinationIndex(a);
+                if (seenFrom[destination] != i) {
+                    seenFrom[destination] = i;
+                    targets[count] = destination;
+                    weights[count] = arcs.length(a);
+                    count++;
+                }
+            }
+            reverse(targets, weights, start, count);
+            // Safe to overwrite: offsets[i + 1] is only read above, before this, and count <= offsets[i + 1].
+            offsets[i] = start;
+        }
+        offsets[size] = count;
+
+        if (count < arcCount) {
+            targets = Arrays.copyOf(targets, count);
+            weights = Arrays.copyOf(weights, count);
+        }
+        return new Graph(ids, offsets, targets, weights);
     }
 
-    public Integer lookupId(String id) {
-        return idToIndex.getOrDefault(id, null);
+    // Restore input order within an origin's run of arcs.
+    private static void reverse(int[] targets, double[] weights, int start, int end) {
+        for (int lo = start, hi = end - 1; lo < hi; lo++, hi--) {
+            int target = targets[lo];
+            targets[lo] = targets[hi];
+            targets[hi] = target;
+
+            double weight = weights[lo];
+            weights[lo] = weights[hi];
+            weights[hi] = weight;
+        }
+    }
+
+    public IdTable getIds() {
+        return ids;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public int arcCount() {
+        return targets.length;
+    }
+
+    // The arc from originIndex to destinationIndex, or -1 if there is none.
+    public int findArc(int originIndex, int destinationIndex) {
+        for (int a = offsets[originIndex]; a < offsets[originIndex + 1]; a++) {
+            if (targets[a] == destinationIndex) {
+                return a;
+            }
+        }
+        return -1;
+    }
+
+    // This graph's arcs, in origin order.
+    public ArcList toArcList() {
+        ArcList result = new ArcList(arcCount());
+        for (int i = 0; i < size(); i++) {
+            for (int a = offsets[i]; a < offsets[i + 1]; a++) {
+                result.add(i, targets[a], weights[a]);
+            }
+        }
+        return result;
+    }
+
+    // This graph plus extra arcs between existing nodes, as if appended to the end of the input.
+    public Graph withExtraArcs(ArcList extraArcs) {
+        ArcList combined = toArcList();
+        for (int a = 0; a < extraArcs.size(); a++) {
+            combined.add(extraArcs.originIndex(a), extraArcs.destinationIndex(a), extraArcs.length(a));
+        }
+        return build(ids, combined);
+    }
+
+    // This graph with each arc's weight replaced by lengths[arc], e.g. for another scenario. Shares the structure.
+    public Graph withLengths(double[] lengths) {
+        if (lengths.length != arcCount()) {
+            throw new IllegalArgumentException(String.format(
+                    "Expected %,d lengths, one per arc, found %,d", arcCount(), lengths.length));
+        }
+        return new Graph(ids, offsets, targets, lengths.clone());
+    }
+
+    public String[] indexToId() {
+        return ids.indexToId();
+    }
+
+    // FNV-1a style hash of the ids (in index order) and arcs. Used to check a saved result belongs to this graph.
+    public long fingerprint() {
+        long hash = mix(0xcbf29ce484222325L, size());
+        for (String id : indexToId()) {
+            hash = mix(hash, id.length());
+            for (int c = 0; c < id.length(); c++) {
+                hash = mix(hash, id.charAt(c));
+            }
+        }
+        for (int i = 0; i < size(); i++) {
+            for (int a = offsets[i]; a < offsets[i + 1]; a++) {
+                hash = mix(hash, i);
+                hash = mix(hash, targets[a]);
+                hash = mix(hash, Double.doubleToLongBits(weights[a]));
+            }
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001b3L;
     }
 
     public FloydWarshallOutput floydWarshall() {
-        final int size = idToIndex.size();
+        return floydWarshall(new LogProgressListener());
+    }
+
+    public FloydWarshallOutput floydWarshall(ProgressListener listener) {
+        final int size = ids.size();
         final int elementCount = size * size;
         long startTimeMs = System.currentTimeMillis();
         System.out.printf("Calculating Floyd - Warshall with %,d elements in bestDistances array\n", elementCount);
 
-        final String[] indexToId = new String[size];
-        for (String id : idToIndex.keySet()) {
-            int index = idToIndex.get(id);
-            indexToId[index] = id;
-        }
+        final String[] indexToId = indexToId();
 
         // Seed array of best lengths. +Inf unless there is a direct arc from i to j.
         final double[][] bestDistances = new double[size][size];
@@ -46,17 +192,16 @@ class Graph {
             }
         }
 
-        for (Arc arc : arcs) {
-            bestDistances[arc.originIndex][arc.destinationIndex] = arc.length;
+        for (int i = 0; i < size; i++) {
+            for (int a = offsets[i]; a < offsets[i + 1]; a++) {
+                bestDistances[i][targets[a]] = weights[a];
+            }
         }
 
         // Find shortest paths. NB N^3 complexity.
+        ProgressTracker tracker = new ProgressTracker("serial", size, 0, listener);
         for (int k = 0; k < size; k++) {
-            if ((k % 100) == 0) {
-                long progressMs = System.currentTimeMillis() - startTimeMs;
-                System.out.printf("%,8d[ms] : Processing Intermediate node %,d (%s)\n", progressMs, k, indexToId[k]);
-            }
-
+            long improvements = 0;
             for (int i = 0; i < size; i++) {
                 for (int j = 0; j < size; j++) {
                     // Calculate path from (i -> k -> j), and compare to existing (i -> j) best length.
@@ -66,12 +211,19 @@ class Graph {
                         double distIToJViaK = distIToK + distKToJ;
                         if (distIToJViaK < bestDistances[i][j]) {
                             bestDistances[i][j] = distIToJViaK;
-                            previousNodeIndex[i][j] = k;
+                            // Last node before j on (i -> k -> j) is the last node before j on (k -> j),
+                            // or k itself if that is a direct link.
+                            int previousKToJ = previousNodeIndex[k][j];
+                            previousNodeIndex[i][j] = (previousKToJ == FloydWarshallOutput.nullNodeIndex) ? k : previousKToJ;
+                            improvements++;
                         }
                     }
                 }
             }
+            tracker.addImprovements(improvements);
+            tracker.completed(k + 1);
         }
+        tracker.finish();
 
         long takenMs = System.currentTimeMillis() - startTimeMs;
         System.out.printf("Took %,d[ms] to calculate Floyd Warshall\n", takenMs);
@@ -79,23 +231,3 @@ class Graph {
         return new FloydWarshallOutput(indexToId, previousNodeIndex, bestDistances);
     }
 }
-
-class Arc {
-    public final String origin;
-    public final int originIndex;
-    public final String destination;
-    public final int destinationIndex;
-    public final double length;
-
-    public Arc(String origin, int originIndex,
-               String destination, int destinationIndex,
-               double length) {
-        this.origin = origin;
-        this.originIndex = originIndex;
-
-        this.destination = destination;
-        this.destinationIndex = destinationIndex;
-
-        this.length = length;
-    }
-}
@@ -0,0 +1,157 @@
+package com.omgcodes;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Best paths for a list of OD pairs, by one ContractionHierarchyQuery per pair, in parallel.
+ * Output is written in OD pair order, in the same format as Main.saveBestPaths(). Pairs are queried in chunks, and
+ * each chunk is written as soon as it completes, while the next is queried, so only a bounded number of lines are
+ * held at once. With a PathCache, pairs repeated across the OD list are only queried once while they stay cached.
+ */
+class HierarchyOdPairSearch {
+    // Fewest pairs per fork-join leaf task. Each leaf allocates one query workspace.
+    private static final int minPairsPerTask = 256;
+    // Pairs per chunk, and chunks queried or waiting to be written at once.
+    private static final int pairsPerChunk = 256 * 1024;
+    private static final int maxChunksInFlight = 2;
+
+    private final Graph graph;
+    private final ContractionHierarchy hierarchy;
+    private final int threads;
+    // Optional, null if not caching.
+    private PathCache pathCache;
+
+    private OdPairs pathsToSave;
+    private byte[][] idBytes;
+    private int pairsPerTask;
+
+    public HierarchyOdPairSearch(Graph graph, ContractionHierarchy hierarchy, int threads) {
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        this.threads = ThreadCount.check(threads);
+    }
+
+    public void setPathCache(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    public void run(OdPairs pathsToSave, File outputPath) throws IOException {
+        long startTimeMs = System.currentTimeMillis();
+        this.pathsToSave = pathsToSave;
+        idBytes = BestPathWriter.encodeIds(graph.indexToId());
+        // A few leaves per thread, so the query workspaces are allocated a few times per thread, not per pair.
+        final int chunkPairs = Math.min(pathsToSave.count, pairsPerChunk);
+        pairsPerTask = Math.max(minPairsPerTask, chunkPairs / (8 * threads) + 1);
+        final int chunkCount = (pathsToSave.count + pairsPerChunk - 1) / pairsPerChunk;
+        System.out.printf("Querying contraction hierarchy for %,d OD Pairs in %,d chunk(s), %d thread(s)\n",
+                pathsToSave.count, chunkCount, threads);
+        System.out.printf("Saving shortest paths to %s\n", outputPath.getAbsolutePath());
+
+        long countLinesWritten = 0;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (OutputStream wr = new BufferedOutputStream(new FileOutputStream(outputPath), 1 << 20)) {
+            ArrayDeque<ForkJoinTask<byte[][]>> inFlight = new ArrayDeque<ForkJoinTask<byte[][]>>();
+            int nextChunk = 0;
+            while ((nextChunk < chunkCount) || !inFlight.isEmpty()) {
+                while ((nextChunk < chunkCount) && (inFlight.size() < maxChunksInFlight)) {
+                    final int start = nextChunk * pairsPerChunk;
+                    final int end = Math.min(pathsToSave.count, start + pairsPerChunk);
+                    inFlight.add(pool.submit(() -> query(start, end)));
+                    nextChunk++;
+                }
+
+                for (byte[] line : inFlight.remove().join()) {
+                    if (line != null) {
+                        wr.write(line);
+                        countLinesWritten++;
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.printf("Wrote %,d output records\n", countLinesWritten);
+        if (pathCache != null) {
+            System.out.printf("Path cache: %,d hits, %,d misses\n", pathCache.getHits(), pathCache.getMisses());
+        }
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to query and save OD Pairs (%,.1f[us] per pair)\n",
+                takenMs, 1000.0 * takenMs / Math.max(1, pathsToSave.count));
+    }
+
+    // Formatted line for each of pairs [start, end), or null if it has no path.
+    private byte[][] query(int start, int end) {
+        byte[][] lines = new byte[end - start][];
+        new PairRange(lines, start, start, end).invoke();
+        return lines;
+    }
+
+    private class PairRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        // Lines of the chunk starting at pair chunkStart.
+        private final byte[][] lines;
+        private final int chunkStart;
+        private final int start;
+        private final int end;
+
+        PairRange(byte[][] lines, int chunkStart, int start, int end) {
+            this.lines = lines;
+            this.chunkStart = chunkStart;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= pairsPerTask) {
+                ContractionHierarchyQuery query = new ContractionHierarchyQuery(hierarchy);
+                ByteLineBuffer buffer = new ByteLineBuffer(256);
+                for (int p = start; p < end; p++) {
+                    int originIndex = pathsToSave.originIndex[p];
+                    int destinationIndex = pathsToSave.destinationIndex[p];
+                    PathCache.CachedPath cached =
+                            (pathCache != null) ? pathCache.get(originIndex, destinationIndex) : null;
+                    if (cached != null) {
+                        if (cached.distance != Double.POSITIVE_INFINITY) {
+                            buffer.clear();
+                            BestPathWriter.appendLine(buffer, idBytes, originIndex, destinationIndex,
+                                    cached.distance, cached.viaNodes, cached.viaNodes.length);
+                            lines[p - chunkStart] = buffer.toByteArray();
+                        }
+                        continue;
+                    }
+
+                    double distance = query.search(originIndex, destinationIndex);
+                    if (distance == Double.POSITIVE_INFINITY) {
+                        if (pathCache != null) {
+                            pathCache.put(originIndex, destinationIndex, distance, query.getViaNodes(), 0);
+                        }
+                        continue;
+                    }
+                    int viaCount = query.unpackViaNodes();
+                    if (pathCache != null) {
+                        pathCache.put(originIndex, destinationIndex, distance, query.getViaNodes(), viaCount);
+                    }
+                    buffer.clear();
+                    BestPathWriter.appendLine(buffer, idBytes, originIndex, destinationIndex, distance,
+                            query.getViaNodes(), viaCount);
+                    lines[p - chunkStart] = buffer.toByteArray();
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new PairRange(lines, chunkStart, start, middle),
+                        new PairRange(lines, chunkStart, middle, end));
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.omgcodes;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Open addressing id -> index dictionary. Indices are allocated 0, 1, 2 .. in order of first insertion.
+ * Ids can be looked up straight from the bytes of an input buffer, so loading only creates a String per distinct id.
+ * Bytes are compared in the given charset, i.e. an id added as a String matches its encoded bytes.
+ */
+class IdTable {
+    private static final int emptySlot = -1;
+    private static final int initialCapacity = 1024;
+
+    private final Charset charset;
+
+    // slots[s] is an index, or emptySlot. Always a power of 2 long, and at most half full.
+    private int[] slots;
+    private int[] hashes;
+    private byte[][] idBytes;
+    private String[] ids;
+    private int count;
+
+    public IdTable(Charset charset) {
+        this.charset = charset;
+        this.slots = new int[initialCapacity];
+        Arrays.fill(slots, emptySlot);
+        this.hashes = new int[initialCapacity / 2];
+        this.idBytes = new byte[initialCapacity / 2][];
+        this.ids = new String[initialCapacity / 2];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String getId(int index) {
+        return ids[index];
+    }
+
+    public String[] indexToId() {
+        return Arrays.copyOf(ids, count);
+    }
+
+    // Index of id, or -1 if not present.
+    public int indexOf(String id) {
+        byte[] bytes = id.getBytes(charset);
+        return find(ByteBuffer.wrap(bytes), 0, bytes.length, hash(ByteBuffer.wrap(bytes), 0, bytes.length));
+    }
+
+    // Index of the id in buffer[start, end), or -1 if not present.
+    public int indexOf(ByteBuffer buffer, int start, int end) {
+        return find(buffer, start, end, hash(buffer, start, end));
+    }
+
+    // Index of id, adding it if not present.
+    public int intern(String id) {
+        byte[] bytes = id.getBytes(charset);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int hash = hash(buffer, 0, bytes.length);
+        int index = find(buffer, 0, bytes.length, hash);
+        return (index >= 0) ? index : add(id, bytes, hash);
+    }
+
+    // Index of the id in buffer[start, end), adding it if not present.
+    public int intern(ByteBuffer buffer, int start, int end) {
+        int hash = hash(buffer, start, end);
+        int index = find(buffer, start, end, hash);
+        if (index >= 0) {
+            return index;
+        }
+
+        byte[] bytes = new byte[end - start];
+        for (int b = 0; b < bytes.length; b++) {
+            bytes[b] = buffer.get(start + b);
+        }
+        return add(new String(bytes, charset), bytes, hash);
+    }
+
+    private int find(ByteBuffer buffer, int start, int end, int hash) {
+        final int mask = slots.length - 1;
+        for (int s = hash & mask; ; s = (s + 1) & mask) {
+            int index = slots[s];
+            if (index == emptySlot) {
+                return -1;
+            }
+            if ((hashes[index] == hash) && equals(idBytes[index], buffer, start, end)) {
+                return index;
+            }
+        }
+    }
+
+    private int add(String id, byte[] bytes, int hash) {
+        if (count == ids.length) {
+            grow();
+        }
+        int index = count++;
+        ids[index] = id;
+        idBytes[index] = bytes;
+        hashes[index] = hash;
+        insertSlot(index);
+        return index;
+    }
+
+    private void insertSlot(int index) {
+        final int mask = slots.length - 1;
+        int s = hashes[index] & mask;
+        while (slots[s] != emptySlot) {
+            s = (s + 1) & mask;
+        }
+        slots[s] = index;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        idBytes = Arrays.copyOf(idBytes, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+
+        slots = new int[capacity * 2];
+        Arrays.fill(slots, emptySlot);
+        for (int index = 0; index < count; index++) {
+            insertSlot(index);
+        }
+    }
+
+    private static boolean equals(byte[] bytes, ByteBuffer buffer, int start, int end) {
+        if (bytes.length != end - start) {
+            return false;
+        }
+        for (int b = 0; b < bytes.length; b++) {
+            if (bytes[b] != buffer.get(start + b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a, with a final mix so the low bits used for slots depend on every byte.
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int hash = 0x811c9dc5;
+        for (int b = start; b < end; b++) {
+            hash = (hash ^ buffer.get(b)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
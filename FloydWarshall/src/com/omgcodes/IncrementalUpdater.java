@@ -0,0 +1,122 @@
+package com.omgcodes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Updates an existing all pairs result for new arcs, or shorter lengths on existing arcs, in O(N^2) per changed arc
+ * rather than a full O(N^3) recalculation.
+ * For a changed arc u -> v of length w, the only new candidate paths are (i -> u) + w + (v -> j), so each cell
+ * (i, j) is compared against that once. Longer lengths on existing arcs can invalidate best paths that used them,
+ * so need a full recalculation, and are rejected.
+ */
+class IncrementalUpdater {
+    private final Graph graph;
+    private final MatrixStore store;
+
+    // Optional, run once the changes are known to be valid, just before the store is first changed.
+    private Runnable beforeUpdate;
+
+    public IncrementalUpdater(Graph graph, MatrixStore store) {
+        this.graph = graph;
+        this.store = store;
+    }
+
+    // E.g. to mark a saved result incomplete while it is being updated. Not run if the changes are rejected.
+    public void setBeforeUpdate(Runnable beforeUpdate) {
+        this.beforeUpdate = beforeUpdate;
+    }
+
+    // Applies changes in order. Returns the number of cells that improved.
+    // Throws IllegalArgumentException, before changing anything, if any change lengthens an existing arc.
+    public long apply(ArcList changes) {
+        checkChanges(changes);
+        if (beforeUpdate != null) {
+            beforeUpdate.run();
+        }
+
+        long startTimeMs = System.currentTimeMillis();
+        long improvedCells = 0;
+        for (int c = 0; c < changes.size(); c++) {
+            improvedCells += apply(changes.originIndex(c), changes.destinationIndex(c), changes.length(c));
+        }
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to apply %,d arc changes, improving %,d cells\n",
+                takenMs, changes.size(), improvedCells);
+        return improvedCells;
+    }
+
+    private long apply(int u, int v, double length) {
+        final int size = store.size();
+        if (length >= store.getBestDistance(u, v)) {
+            // Already a path from u to v at least as good, so nothing via the changed arc can improve.
+            return 0;
+        }
+
+        // Row v, with (v -> v) as the empty path rather than the best cycle.
+        double[] distVToJ = new double[size];
+        int[] previousVToJ = new int[size];
+        for (int j = 0; j < size; j++) {
+            distVToJ[j] = (j == v) ? 0.0 : store.getBestDistance(v, j);
+            previousVToJ[j] = store.getPreviousNodeIndex(v, j);
+        }
+
+        long improvedCells = 0;
+        for (int i = 0; i < size; i++) {
+            double distIToU = (i == u) ? 0.0 : store.getBestDistance(i, u);
+            if (distIToU == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            double distIToV = distIToU + length;
+
+            for (int j = 0; j < size; j++) {
+                if (distVToJ[j] == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                double distIToJ = distIToV + distVToJ[j];
+                if (distIToJ < store.getBestDistance(i, j)) {
+                    // Last node before j is u if j is v itself (unless the new arc is the whole path),
+                    // otherwise the last node on (v -> j).
+                    int previous;
+                    if (j == v) {
+                        previous = (i == u) ? FloydWarshallOutput.nullNodeIndex : u;
+                    } else {
+                        previous = (previousVToJ[j] == FloydWarshallOutput.nullNodeIndex) ? v : previousVToJ[j];
+                    }
+                    store.set(i, j, distIToJ, previous);
+                    improvedCells++;
+                }
+            }
+        }
+        return improvedCells;
+    }
+
+    // Throws IllegalArgumentException if any change lengthens an existing arc.
+    private void checkChanges(ArcList changes) {
+        // Direct lengths of the changed pairs so far, starting from the graph's. Later changes replace earlier ones.
+        final long size = graph.size();
+        final IdTable ids = graph.getIds();
+        Map<Long, Double> lengths = new HashMap<Long, Double>();
+        for (int c = 0; c < changes.size(); c++) {
+            int originIndex = changes.originIndex(c);
+            int destinationIndex = changes.destinationIndex(c);
+            long key = originIndex * size + destinationIndex;
+            Double current;
+            if (lengths.containsKey(key)) {
+                current = lengths.get(key);
+            } else {
+                int a = graph.findArc(originIndex, destinationIndex);
+                current = (a >= 0) ? graph.weights[a] : null;
+            }
+
+            double length = changes.length(c);
+            if ((current != null) && (length > current)) {
+                throw new IllegalArgumentException(String.format(
+                        "%s -> %s lengthens from %f to %f, which needs a full recalculation",
+                        ids.getId(originIndex), ids.getId(destinationIndex), current, length));
+            }
+            lengths.put(key, length);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of node indices, keyed on an external double[] of distances. Supports decrease key.
+ * Primitive arrays only, so one instance can be reused for many searches without allocating.
+ */
+class IndexedMinHeap {
+    private static final int notInHeap = -1;
+
+    private final int[] heap;
+    // position[node] is the node's slot in heap, or notInHeap.
+    private final int[] position;
+    private double[] keys;
+    private int count;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, notInHeap);
+    }
+
+    // Start a new search ordered by keys. Any nodes left from a previous search are discarded.
+    public void reset(double[] keys) {
+        for (int slot = 0; slot < count; slot++) {
+            position[heap[slot]] = notInHeap;
+        }
+        count = 0;
+        this.keys = keys;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    // Insert node, or move it up if its key has decreased since it was inserted.
+    public void insertOrDecrease(int node) {
+        int slot = position[node];
+        if (slot == notInHeap) {
+            slot = count++;
+            heap[slot] = node;
+            position[node] = slot;
+        }
+        siftUp(slot);
+    }
+
+    // Node with the smallest key, without removing it. Only valid when not empty.
+    public int peekMin() {
+        return heap[0];
+    }
+
+    public int removeMin() {
+        int result = heap[0];
+        position[result] = notInHeap;
+        count--;
+        if (count > 0) {
+            int last = heap[count];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return result;
+    }
+
+    private void siftUp(int slot) {
+        final int node = heap[slot];
+        final double key = keys[node];
+        while (slot > 0) {
+            int parentSlot = (slot - 1) >>> 1;
+            int parent = heap[parentSlot];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[slot] = parent;
+            position[parent] = slot;
+            slot = parentSlot;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+
+    private void siftDown(int slot) {
+        final int node = heap[slot];
+        final double key = keys[node];
+        while (true) {
+            int childSlot = 2 * slot + 1;
+            if (childSlot >= count) {
+                break;
+            }
+            if ((childSlot + 1 < count) && (keys[heap[childSlot + 1]] < keys[heap[childSlot]])) {
+                childSlot++;
+            }
+            int child = heap[childSlot];
+            if (keys[child] >= key) {
+                break;
+            }
+            heap[slot] = child;
+            position[child] = slot;
+            slot = childSlot;
+        }
+        heap[slot] = node;
+        position[node] = slot;
+    }
+}
@@ -0,0 +1,185 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+
+/**
+ * Row-major matrices with whole number distances, for graphs whose lengths are all non-negative whole numbers.
+ * Distances are ints when every path length is known to fit, halving their memory, otherwise longs.
+ * No path is a sentinel of half the type's max rather than +Inf. Lengths are non-negative, so a sum through a
+ * missing link is at least the sentinel, never beats a stored distance, and so is never stored: the add saturates
+ * for free, with no overflow and no infinity test in the inner loop.
+ * Sums stay below 2^53, so are exact as doubles too: every comparison matches the double engines, and so does
+ * every result.
+ */
+class IntegerMatrices implements MatrixStore {
+    public static final int intInfinity = Integer.MAX_VALUE / 2;
+    public static final long longInfinity = Long.MAX_VALUE / 2;
+    // Largest total length for which every path length is exact as a double.
+    private static final long maxExactTotal = 1L << 53;
+
+    public final int size;
+    // Exactly one of intDistances and longDistances is set.
+    private final int[] intDistances;
+    private final long[] longDistances;
+    private final int[] previousNodeIndex;
+
+    private IntegerMatrices(int size, boolean useInts) {
+        if (size > RowMajorMatrices.maxSize) {
+            throw new IllegalArgumentException(String.format(
+                    "%,d nodes is too many for a row-major matrix (max %,d)", size, RowMajorMatrices.maxSize));
+        }
+        this.size = size;
+        if (useInts) {
+            intDistances = new int[size * size];
+            Arrays.fill(intDistances, intInfinity);
+            longDistances = null;
+        } else {
+            intDistances = null;
+            longDistances = new long[size * size];
+            Arrays.fill(longDistances, longInfinity);
+        }
+        previousNodeIndex = new int[size * size];
+        Arrays.fill(previousNodeIndex, FloydWarshallOutput.nullNodeIndex);
+    }
+
+    // Sum of all lengths, if they are all non-negative whole numbers with a total small enough for every path length
+    // to be exact as a double. Otherwise -1. No shortest path (or shortest cycle) is longer than the total.
+    public static long integralTotalLength(Graph graph) {
+        long total = 0;
+        for (double length : graph.weights) {
+            if (!(length >= 0) || (length != Math.rint(length)) || (length > maxExactTotal)) {
+                return -1;
+            }
+            total += (long) length;
+            if (total > maxExactTotal) {
+                return -1;
+            }
+        }
+        return total;
+    }
+
+    // Seed with no path everywhere, except direct arcs. Only for graphs where integralTotalLength() >= 0.
+    public static IntegerMatrices seed(Graph graph) {
+        long total = integralTotalLength(graph);
+        if (total < 0) {
+            throw new IllegalArgumentException("Lengths are not all small non-negative whole numbers");
+        }
+        IntegerMatrices result = new IntegerMatrices(graph.size(), total < intInfinity);
+        for (int i = 0; i < result.size; i++) {
+            for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                int cell = i * result.size + graph.targets[a];
+                if (result.intDistances != null) {
+                    result.intDistances[cell] = (int) graph.weights[a];
+                } else {
+                    result.longDistances[cell] = (long) graph.weights[a];
+                }
+            }
+        }
+        return result;
+    }
+
+    public boolean usesInts() {
+        return intDistances != null;
+    }
+
+    public int bytesPerCell() {
+        return (usesInts() ? Integer.BYTES : Long.BYTES) + Integer.BYTES;
+    }
+
+    // Relax rows [iStart, iEnd) through intermediate node k. Returns the number of cells improved.
+    public long relax(int iStart, int iEnd, int k) {
+        return (intDistances != null) ? relaxInts(iStart, iEnd, k) : relaxLongs(iStart, iEnd, k);
+    }
+
+    private long relaxInts(int iStart, int iEnd, int k) {
+        long improvements = 0;
+        final int[] distances = intDistances;
+        final int[] previous = previousNodeIndex;
+        final int kRow = k * size;
+        for (int i = iStart; i < iEnd; i++) {
+            final int iRow = i * size;
+            final int distIToK = distances[iRow + k];
+            if (distIToK == intInfinity) {
+                continue;
+            }
+
+            for (int j = 0; j < size; j++) {
+                final int distIToJViaK = distIToK + distances[kRow + j];
+                if (distIToJViaK < distances[iRow + j]) {
+                    distances[iRow + j] = distIToJViaK;
+                    final int previousKToJ = previous[kRow + j];
+                    previous[iRow + j] = (previousKToJ == FloydWarshallOutput.nullNodeIndex) ? k : previousKToJ;
+                    improvements++;
+                }
+            }
+        }
+        return improvements;
+    }
+
+    private long relaxLongs(int iStart, int iEnd, int k) {
+        long improvements = 0;
+        final long[] distances = longDistances;
+        final int[] previous = previousNodeIndex;
+        final int kRow = k * size;
+        for (int i = iStart; i < iEnd; i++) {
+            final int iRow = i * size;
+            final long distIToK = distances[iRow + k];
+            if (distIToK == longInfinity) {
+                continue;
+            }
+
+            for (int j = 0; j < size; j++) {
+                final long distIToJViaK = distIToK + distances[kRow + j];
+                if (distIToJViaK < distances[iRow + j]) {
+                    distances[iRow + j] = distIToJViaK;
+                    final int previousKToJ = previous[kRow + j];
+                    previous[iRow + j] = (previousKToJ == FloydWarshallOutput.nullNodeIndex) ? k : previousKToJ;
+                    improvements++;
+                }
+            }
+        }
+        return improvements;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getBestDistance(int i, int j) {
+        int cell = i * size + j;
+        if (intDistances != null) {
+            return (intDistances[cell] == intInfinity) ? Double.POSITIVE_INFINITY : intDistances[cell];
+        }
+        return (longDistances[cell] == longInfinity) ? Double.POSITIVE_INFINITY : longDistances[cell];
+    }
+
+    @Override
+    public int getPreviousNodeIndex(int i, int j) {
+        return previousNodeIndex[i * size + j];
+    }
+
+    @Override
+    public void set(int i, int j, double bestDistance, int previousNodeIndex) {
+        int cell = i * size + j;
+        if (bestDistance == Double.POSITIVE_INFINITY) {
+            if (intDistances != null) {
+                intDistances[cell] = intInfinity;
+            } else {
+                longDistances[cell] = longInfinity;
+            }
+        } else {
+            long limit = (intDistances != null) ? intInfinity : longInfinity;
+            if (!(bestDistance >= 0) || (bestDistance != Math.rint(bestDistance)) || (bestDistance >= limit)) {
+                throw new IllegalArgumentException("Not a whole number distance in range: " + bestDistance);
+            }
+            if (intDistances != null) {
+                intDistances[cell] = (int) bestDistance;
+            } else {
+                longDistances[cell] = (long) bestDistance;
+            }
+        }
+        this.previousNodeIndex[cell] = previousNodeIndex;
+    }
+}
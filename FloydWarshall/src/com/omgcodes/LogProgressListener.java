@@ -0,0 +1,26 @@
+package com.omgcodes;
+
+/**
+ * Logs progress to stdout, in the style of the other progress lines, with throughput and an ETA.
+ */
+class LogProgressListener implements ProgressListener {
+    @Override
+    public void progress(ProgressSample sample) {
+        System.out.printf("%,8d[ms] : Completed %,d of %,d %s, %,.0f cells/s, ETA %s\n",
+                sample.elapsedMs, sample.completedNodes, sample.size, sample.unit, sample.cellsPerSecond,
+                (sample.etaMs >= 0) ? formatDuration(sample.etaMs) : "unknown");
+    }
+
+    @Override
+    public void finished(ProgressSample sample) {
+        System.out.printf("%,8d[ms] : Relaxed %,d cells at %,.0f cells/s, %s improvements\n",
+                sample.elapsedMs, sample.relaxations, sample.cellsPerSecond,
+                (sample.improvements >= 0) ? String.format("%,d", sample.improvements) : "uncounted");
+    }
+
+    // h:mm:ss
+    static String formatDuration(long ms) {
+        long seconds = ms / 1000;
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+    }
+}
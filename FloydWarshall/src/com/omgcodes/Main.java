@@ -1,15 +1,9 @@
 package com.omgcodes;
 
 import org.apache.commons.cli.*;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
-import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.util.*;
 
@@ -18,23 +12,70 @@ public class Main {
     public static void main(String[] args) {
         try {
             CommandLine cli = parseCli(args);
+            boolean searchesPerPair = cli.hasOption("serve")
+                    ? cli.hasOption("odOnly")
+                    : (cli.hasOption("hierarchy") && !cli.hasOption("odOnly"));
+            if (cli.hasOption("pathCache") && !searchesPerPair) {
+                throw new IllegalArgumentException("-pathCache only applies to -hierarchy, or -serve with -odOnly");
+            }
             File graphInput = new File(cli.getOptionValue("graph"));
-            File odPairInput = new File(cli.getOptionValue("odPairs"));
-            File outputPath = new File(cli.getOptionValue("output"));
 
+            if (cli.hasOption("serve")) {
+                System.out.printf("Graph: %s\n", graphInput.getAbsolutePath());
+                serve(cli, loadGraph(graphInput));
+                return;
+            }
+
+            File odPairInput = new File(requiredOptionValue(cli, "odPairs"));
+            File outputPath = new File(requiredOptionValue(cli, "output"));
+
+            System.out.printf("Graph: %s\nOD Pairs: %s\nOutput: %s\n",
                     graphInput.getAbsolutePath(),
                     odPairInput.getAbsolutePath(),
                     outputPath.getAbsolutePath());
 
-            List<CSVRecord> input = loadInput(graphInput);
+            Graph graph = loadGraph(graphInput);
+            OdPairs pathsToSave = loadPathsToOutput(odPairInput, graph);
+
+            String format = cli.getOptionValue("format", "csv");
+            if (!format.equals("csv") && !format.equals("binary")) {
+                throw new IllegalArgumentException("Unknown output format: " + format);
+            }
+
+            if (cli.hasOption("scenarios")) {
+                runScenarios(cli, graph, pathsToSave, outputPath, format);
+                return;
+            }
+
+            if (cli.hasOption("odOnly")) {
+                if (!format.equals("csv")) {
+                    throw new IllegalArgumentException("-odOnly only writes csv output");
+                }
+                new OdPairSearch(graph, threadCount(cli)).run(pathsToSave, outputPath);
+                return;
+            }
 
-            Graph graph = buildGraph(input);
-            List<Pair<Integer, Integer>> pathsToSave = loadPathsToOutput(odPairInput, graph);
+            if (cli.hasOption("hierarchy")) {
+                if (!format.equals("csv")) {
+                    throw new IllegalArgumentException("-hierarchy only writes csv output");
+                }
+                File hierarchyFile = new File(cli.getOptionValue("hierarchy"));
+                ContractionHierarchy hierarchy = ContractionHierarchy.openOrBuild(graph, hierarchyFile);
+                HierarchyOdPairSearch search = new HierarchyOdPairSearch(graph, hierarchy, threadCount(cli));
+                search.setPathCache(pathCache(cli));
+                search.run(pathsToSave, outputPath);
+                return;
+            }
 
-            FloydWarshallOutput output = graph.floydWarshall();
+            FloydWarshallOutput output;
+            try (MetricsFileListener metrics = metricsListener(cli)) {
+                output = cli.hasOption("delta")
+                        ? applyDelta(cli, graph)
+                        : calculateBestPaths(cli, graph, threadCount(cli), progressListener(metrics));
+            }
 
             long startTimeMs = System.currentTimeMillis();
-            saveBestPaths(pathsToSave, output, outputPath);
+            saveBestPaths(pathsToSave, output, outputPath, format, threadCount(cli));
             long takenMs = System.currentTimeMillis() - startTimeMs;
             System.out.printf("Took %,d[ms] to save output\n", takenMs);
         } catch (Exception e) {
@@ -54,14 +95,140 @@ public class Main {
         options.addOption(
                 Option.builder("odPairs")
                         .hasArg()
-                        .required()
-                        .desc("Input path to OD Pair list CSV file")
+                        .desc("Input path to OD Pair list CSV file. Required unless -serve")
                         .build());
         options.addOption(
                 Option.builder("output")
                         .hasArg()
-                        .required()
-                        .desc("Path to save best found best paths")
+                        .desc("Path to save best found best paths. Required unless -serve")
+                        .build());
+        options.addOption(
+                Option.builder("engine")
+                        .hasArg()
+                        .desc("Shortest path engine: auto (default), serial, blocked, parallel, dijkstra or "
+                                + "condensed (by strongly connected component). "
+                                + "auto picks dijkstra for sparse graphs, otherwise parallel")
+                        .build());
+        options.addOption(
+                Option.builder("blockSize")
+                        .hasArg()
+                        .desc("Tile size for the blocked engine (default " + BlockedFloydWarshall.defaultBlockSize
+                                + "). Distances do not depend on it, but which of several equally short paths "
+                                + "is output can")
+                        .build());
+        options.addOption(
+                Option.builder("allowTieDifferences")
+                        .desc("Allow -engine blocked, which is not a drop-in for serial: where several paths are "
+                                + "equally short, the one it outputs can differ from serial")
+                        .build());
+        options.addOption(
+                Option.builder("branchFree")
+                        .desc("Use the branch free min-plus kernel in the blocked and parallel engines, which the JIT "
+                                + "can compile to SIMD instructions. Results are identical")
+                        .build());
+        options.addOption(
+                Option.builder("doubleWeights")
+                        .desc("Keep the parallel engine on double distances, even if every length is a non-negative "
+                                + "whole number. Otherwise it then uses smaller, faster integer distances, with "
+                                + "identical results")
+                        .build());
+        options.addOption(
+                Option.builder("threads")
+                        .hasArg()
+                        .desc("Worker threads for the blocked, parallel, dijkstra and condensed engines, odOnly and "
+                                + "writing output (default: available processors)")
+                        .build());
+        options.addOption(
+                Option.builder("scenarios")
+                        .hasArg()
+                        .desc("Weight file with a header \"origin,destination,name1,name2,...\" and a line of lengths "
+                                + "per arc, one column per scenario. Runs the engine once per scenario, saving "
+                                + "each to the output path with the scenario name before its extension")
+                        .build());
+        options.addOption(
+                Option.builder("scenarioColumn")
+                        .desc("With -scenarios, save every scenario to the one output file, with the scenario "
+                                + "name as an extra first column")
+                        .build());
+        options.addOption(
+                Option.builder("parallelScenarios")
+                        .hasArg()
+                        .desc("With -scenarios, how many scenarios to run at once, sharing the threads. Each "
+                                + "holds its own result in memory (default: thread count)")
+                        .build());
+        options.addOption(
+                Option.builder("matrixCache")
+                        .hasArg()
+                        .desc("Keep the all pairs matrices in this memory mapped file, reusing it if it already "
+                                + "holds a completed result for the same graph. Overrides -engine")
+                        .build());
+        options.addOption(
+                Option.builder("compact")
+                        .desc("Calculate all pairs with float distances and narrow previous node indices, "
+                                + "halving memory at reduced precision. Needs non-negative lengths. Overrides -engine")
+                        .build());
+        options.addOption(
+                Option.builder("checkpoint")
+                        .hasArg()
+                        .desc("Calculate with the parallel engine, checkpointing progress to this file so a killed "
+                                + "run can be resumed with -resume. Written in the background from a copy of the "
+                                + "matrices, which needs that much more memory. Deleted once complete. Overrides -engine")
+                        .build());
+        options.addOption(
+                Option.builder("checkpointIterations")
+                        .hasArg()
+                        .desc("Checkpoint after this many intermediate nodes (default 1000)")
+                        .build());
+        options.addOption(
+                Option.builder("checkpointMinutes")
+                        .hasArg()
+                        .desc("Checkpoint once this many minutes have passed since the last one (default 30)")
+                        .build());
+        options.addOption(
+                Option.builder("resume")
+                        .desc("Resume from the -checkpoint file, if it holds a checkpoint for this graph")
+                        .build());
+        options.addOption(
+                Option.builder("delta")
+                        .hasArg()
+                        .desc("CSV of new arcs / shorter lengths to apply to the completed -matrixCache result for "
+                                + "-graph, rather than recalculating. The file is then the result for -graph with "
+                                + "the delta rows appended")
+                        .build());
+        options.addOption(
+                Option.builder("odOnly")
+                        .desc("Only search from the origins in the OD Pair list, without an all pairs matrix")
+                        .build());
+        options.addOption(
+                Option.builder("hierarchy")
+                        .hasArg()
+                        .desc("Answer the OD Pair list with a contraction hierarchy, without an all pairs matrix. "
+                                + "The hierarchy is kept in this file, and only rebuilt when the graph changes")
+                        .build());
+        options.addOption(
+                Option.builder("format")
+                        .hasArg()
+                        .desc("Output format: csv (default) or binary, a memory mappable columnar file with a record "
+                                + "per OD Pair, read with BinaryResultReader")
+                        .build());
+        options.addOption(
+                Option.builder("metrics")
+                        .hasArg()
+                        .desc("Append progress samples (throughput, improvements, ETA) of whichever engine runs "
+                                + "to this CSV file, see MetricsFileListener")
+                        .build());
+        options.addOption(
+                Option.builder("pathCache")
+                        .hasArg()
+                        .desc("Cache up to this many best paths, least recently used first out, so OD Pairs asked "
+                                + "for again are not searched again. Only with -hierarchy, or -serve with -odOnly")
+                        .build());
+        options.addOption(
+                Option.builder("serve")
+                        .hasArg()
+                        .desc("Rather than saving paths for -odPairs, keep the result resident and answer queries "
+                                + "on this loopback port (see PathQueryServer). With -odOnly, searches per query "
+                                + "origin rather than calculating all pairs")
                         .build());
 
         CommandLineParser parser = new DefaultParser();
@@ -70,139 +237,280 @@ public class Main {
         return cli;
     }
 
-    private static List<CSVRecord> loadInput(File source) throws IOException {
-        System.out.printf("Loading Links for %s\n", source.getAbsolutePath());
+    private static String requiredOptionValue(CommandLine cli, String name) {
+        if (!cli.hasOption(name)) {
+            throw new IllegalArgumentException("Missing required option: " + name);
+        }
+        return cli.getOptionValue(name);
+    }
 
-        CSVFormat format = CSVFormat.DEFAULT.withSkipHeaderRecord();
-        CSVParser rd = CSVParser.parse(source, Charset.defaultCharset(), format);
-        List<CSVRecord> records = rd.getRecords();
-        rd.close();
-        System.out.printf("%,d records\n", records.size());
+    // Serves queries until the process is killed.
+    private static void serve(CommandLine cli, Graph graph) throws IOException {
+        int port = Integer.parseInt(cli.getOptionValue("serve"));
+        PathQueryServer server;
+        if (cli.hasOption("odOnly")) {
+            server = new PathQueryServer(graph);
+            server.setPathCache(pathCache(cli));
+        } else {
+            FloydWarshallOutput output;
+            try (MetricsFileListener metrics = metricsListener(cli)) {
+                output = cli.hasOption("delta")
+                        ? applyDelta(cli, graph)
+                        : calculateBestPaths(cli, graph, threadCount(cli), progressListener(metrics));
+            }
+            server = new PathQueryServer(graph, output);
+        }
+        try {
+            server.bind(port);
+            server.serve();
+        } finally {
+            server.close();
+        }
+    }
 
-        return records;
+    // Runs every scenario in the -scenarios weight file over the graph's arcs, with the engine options.
+    private static void runScenarios(CommandLine cli, Graph graph, OdPairs pathsToSave, File outputPath, String format)
+            throws IOException {
+        for (String option : new String[]{"delta", "odOnly", "hierarchy", "matrixCache", "checkpoint"}) {
+            if (cli.hasOption(option)) {
+                throw new IllegalArgumentException("-scenarios cannot be used with -" + option);
+            }
+        }
+        ScenarioWeights weights = ScenarioWeights.load(new File(cli.getOptionValue("scenarios")), graph);
+        int threads = threadCount(cli);
+        int parallelScenarios = Integer.parseInt(cli.getOptionValue("parallelScenarios", Integer.toString(threads)));
+        try (MetricsFileListener metrics = metricsListener(cli)) {
+            ProgressListener listener = progressListener(metrics);
+            ScenarioBatch.Engine engine = (scenarioGraph, scenarioThreads) ->
+                    calculateBestPaths(cli, scenarioGraph, scenarioThreads, listener);
+            new ScenarioBatch(weights, engine, threads, parallelScenarios)
+                    .run(pathsToSave, outputPath, format, cli.hasOption("scenarioColumn"));
+        }
     }
 
-    private static Graph buildGraph(List<CSVRecord> links) {
-        Arc[] arcs = new Arc[links.size()];
-        Map<String, Integer> idToIndex = new HashMap<String, Integer>();
-        int arcIndex = 0;
-        for (CSVRecord current : links) {
-            String origin = current.get(0);
-            int originIndex = index(idToIndex, origin);
+    // The -metrics file listener, or null if not saving metrics.
+    private static MetricsFileListener metricsListener(CommandLine cli) throws IOException {
+        return cli.hasOption("metrics") ? new MetricsFileListener(new File(cli.getOptionValue("metrics"))) : null;
+    }
 
-            String destination = current.get(1);
-            int destinationIndex = index(idToIndex, destination);
+    // Progress logging, plus metrics if not null.
+    private static ProgressListener progressListener(MetricsFileListener metrics) {
+        LogProgressListener log = new LogProgressListener();
+        return (metrics != null) ? ProgressListener.all(log, metrics) : log;
+    }
 
-            double length = Double.parseDouble(current.get(2));
+    // listener receives progress from whichever engine runs.
+    private static FloydWarshallOutput calculateBestPaths(
+            CommandLine cli, Graph graph, int threads, ProgressListener listener) throws IOException {
+        String engine = cli.getOptionValue("engine", "auto");
+        if (cli.hasOption("matrixCache")) {
+            File matrixCache = new File(cli.getOptionValue("matrixCache"));
+            MappedFloydWarshall mapped = new MappedFloydWarshall(graph, matrixCache, threads);
+            mapped.setProgressListener(listener);
+            return mapped.run();
+        }
+        if (cli.hasOption("compact")) {
+            CompactFloydWarshall compact = new CompactFloydWarshall(graph, threads);
+            compact.setProgressListener(listener);
+            return compact.run();
+        }
+        if (cli.hasOption("checkpoint")) {
+            ParallelFloydWarshall parallel = new ParallelFloydWarshall(graph, threads, cli.hasOption("branchFree"));
+            parallel.setProgressListener(listener);
+            parallel.setCheckpoint(
+                    new File(cli.getOptionValue("checkpoint")),
+                    Integer.parseInt(cli.getOptionValue("checkpointIterations", "1000")),
+                    60000L * Long.parseLong(cli.getOptionValue("checkpointMinutes", "30")),
+                    cli.hasOption("resume"));
+            return parallel.run();
+        }
+        if (engine.equals("auto")) {
+            engine = DijkstraAllPairs.isSparse(graph) ? "dijkstra" : "parallel";
+            System.out.printf("Using %s engine\n", engine);
+        }
+        switch (engine) {
+            case "serial":
+                return graph.floydWarshall(listener);
+            case "blocked":
+                if (!cli.hasOption("allowTieDifferences")) {
+                    throw new IllegalArgumentException("-engine blocked can output different paths from serial "
+                            + "where paths tie, add -allowTieDifferences to use it");
+                }
+                int blockSize = Integer.parseInt(
+                        cli.getOptionValue("blockSize", Integer.toString(BlockedFloydWarshall.defaultBlockSize)));
+                BlockedFloydWarshall blocked =
+                        new BlockedFloydWarshall(graph, blockSize, threads, cli.hasOption("branchFree"));
+                blocked.setProgressListener(listener);
+                return blocked.run();
+            case "parallel":
+                if (!cli.hasOption("doubleWeights") && IntegerFloydWarshall.supports(graph)) {
+                    System.out.println("Lengths are all whole numbers, using integer distances");
+                    IntegerFloydWarshall integer = new IntegerFloydWarshall(graph, threads);
+                    integer.setProgressListener(listener);
+                    return integer.run();
+                }
+                ParallelFloydWarshall parallel = new ParallelFloydWarshall(graph, threads, cli.hasOption("branchFree"));
+                parallel.setProgressListener(listener);
+                return parallel.run();
+            case "dijkstra":
+                DijkstraAllPairs dijkstra = new DijkstraAllPairs(graph, threads);
+                dijkstra.setProgressListener(listener);
+                return dijkstra.run();
+            case "condensed":
+                CondensedFloydWarshall condensed = new CondensedFloydWarshall(graph, threads);
+                condensed.setProgressListener(listener);
+                return condensed.run();
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+
+    private static FloydWarshallOutput applyDelta(CommandLine cli, Graph graph) throws IOException {
+        if (!cli.hasOption("matrixCache")) {
+            throw new IllegalArgumentException("-delta needs the -matrixCache result it updates");
+        }
+        File matrixCache = new File(cli.getOptionValue("matrixCache"));
+        ArcList changes = loadDeltaArcs(new File(cli.getOptionValue("delta")), graph);
+        Graph updatedGraph = graph.withExtraArcs(changes);
+
+        MappedMatrixStore store = MappedMatrixStore.openComplete(matrixCache, graph.size(), updatedGraph.fingerprint());
+        if (store != null) {
+            System.out.printf("Delta already applied to %s\n", matrixCache.getAbsolutePath());
+            return new FloydWarshallOutput(graph.indexToId(), store);
+        }
 
-            arcs[arcIndex] = new Arc(origin, originIndex, destination, destinationIndex, length);
-            arcIndex++;
+        store = MappedMatrixStore.openComplete(matrixCache, graph.size(), graph.fingerprint());
+        if (store == null) {
+            throw new IllegalArgumentException(
+                    "No completed result for this graph in " + matrixCache.getAbsolutePath());
         }
+        IncrementalUpdater updater = new IncrementalUpdater(graph, store);
+        // A rejected delta leaves the completed result as it was.
+        updater.setBeforeUpdate(store::markIncomplete);
+        updater.apply(changes);
+        store.setFingerprint(updatedGraph.fingerprint());
+        store.markComplete();
+
+        return new FloydWarshallOutput(graph.indexToId(), store);
+    }
 
-        assert arcIndex == arcs.length;
+    // Delta arcs may only join existing nodes. New nodes change the matrix size, so need a full recalculation.
+    private static ArcList loadDeltaArcs(File source, Graph graph) throws IOException {
+        System.out.printf("Loading Links for %s\n", source.getAbsolutePath());
 
-        System.out.printf("%,d Ids indexed, %,d arcs\n", idToIndex.size(), arcs.length);
+        ArcList arcs = new ArcList(16);
+        try (MappedCsvReader rd = new MappedCsvReader(source, Charset.defaultCharset())) {
+            while (rd.nextRecord()) {
+                int originIndex = rd.lookup(0, graph.getIds());
+                int destinationIndex = rd.lookup(1, graph.getIds());
 
-        Graph result = new Graph(idToIndex, arcs);
-        return result;
-    }
+                if ((originIndex < 0) || (destinationIndex < 0)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Delta arc %s -> %s has a node not in the graph, which needs a full recalculation",
+                            rd.getString(0), rd.getString(1)));
+                }
 
-    private static int index(Map<String, Integer> idToIndex, String id) {
-        if (!idToIndex.containsKey(id)) {
-            int result = idToIndex.size();
-            idToIndex.put(id, result);
-            return result;
+                arcs.add(originIndex, destinationIndex, rd.getDouble(2));
+            }
         }
+        System.out.printf("%,d records\n", arcs.size());
 
-        return idToIndex.get(id);
+        return arcs;
     }
 
-    private static List<Pair<Integer, Integer>> loadPathsToOutput(File source, Graph graph) throws IOException {
-        System.out.printf("Saving best paths for OD Pairs\n");
-
-        CSVFormat format = CSVFormat.DEFAULT.withSkipHeaderRecord();
-        CSVParser rd = CSVParser.parse(source, Charset.defaultCharset(), format);
-        List<CSVRecord> records = rd.getRecords();
-        rd.close();
-        System.out.printf("%,d OD Pairs defined\n", records.size());
+    private static int threadCount(CommandLine cli) {
+        return Integer.parseInt(
+                cli.getOptionValue("threads", Integer.toString(Runtime.getRuntime().availableProcessors())));
+    }
 
-        Set<String> unknownIds = new HashSet<String>();
+    // Streams the links straight from the mapped file into primitive arrays, interning ids as it goes,
+    // so there is no per record or per arc object, and only one String per distinct id.
+    // Package private, as are loadPathsToOutput and saveBestPaths, for the benchmarks in bench/.
+    static Graph loadGraph(File source) throws IOException {
+        System.out.printf("Loading Links for %s\n", source.getAbsolutePath());
 
-        List<Pair<Integer, Integer>> result = new ArrayList<Pair<Integer, Integer>>();
-        for (CSVRecord current : records) {
-            String fromId = current.get(0);
-            Integer fromIndex = graph.lookupId(fromId);
+        IdTable ids = new IdTable(Charset.defaultCharset());
+        ArcList arcs;
+        try (MappedCsvReader rd = new MappedCsvReader(source, Charset.defaultCharset())) {
+            arcs = new ArcList((int) Math.min(Integer.MAX_VALUE - 8, rd.estimateRecords(16)));
+            while (rd.nextRecord()) {
+                int originIndex = rd.intern(0, ids);
+                int destinationIndex = rd.intern(1, ids);
+                arcs.add(originIndex, destinationIndex, rd.getDouble(2));
+            }
+        }
+        System.out.printf("%,d records\n", arcs.size());
 
-            String toId = current.get(1);
-            Integer toIndex = graph.lookupId(toId);
+        Graph result = Graph.build(ids, arcs);
+        System.out.printf("%,d Ids indexed, %,d arcs\n", ids.size(), result.arcCount());
+        return result;
+    }
 
-            if (fromIndex == null) {
-                unknownIds.add(fromId);
-            }
-            if (toIndex == null) {
-                unknownIds.add(toId);
-            }
+    static OdPairs loadPathsToOutput(File source, Graph graph) throws IOException {
+        System.out.printf("Saving best paths for OD Pairs\n");
 
-            if ((fromIndex != null) && (toIndex != null)) {
-                result.add(Pair.of(fromIndex, toIndex));
+        IdTable ids = graph.getIds();
+        Set<String> unknownIds = new HashSet<String>();
+        int definedCount = 0;
+        int count = 0;
+        int[] originIndices;
+        int[] destinationIndices;
+        try (MappedCsvReader rd = new MappedCsvReader(source, Charset.defaultCharset())) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE - 8, rd.estimateRecords(8));
+            originIndices = new int[capacity];
+            destinationIndices = new int[capacity];
+
+            while (rd.nextRecord()) {
+                definedCount++;
+                int fromIndex = rd.lookup(0, ids);
+                int toIndex = rd.lookup(1, ids);
+
+                if (fromIndex < 0) {
+                    unknownIds.add(rd.getString(0));
+                }
+                if (toIndex < 0) {
+                    unknownIds.add(rd.getString(1));
+                }
+
+                if ((fromIndex >= 0) && (toIndex >= 0)) {
+                    if (count == originIndices.length) {
+                        capacity = (int) Math.min(Integer.MAX_VALUE - 8, (long) capacity + (capacity >> 1) + 16);
+                        originIndices = Arrays.copyOf(originIndices, capacity);
+                        destinationIndices = Arrays.copyOf(destinationIndices, capacity);
+                    }
+                    originIndices[count] = fromIndex;
+                    destinationIndices[count] = toIndex;
+                    count++;
+                }
             }
         }
-        System.out.printf("Saving best paths for %,d OD Pairs\n", result.size());
+        System.out.printf("%,d OD Pairs defined\n", definedCount);
+        System.out.printf("Saving best paths for %,d OD Pairs\n", count);
         System.out.printf("%,d unknown ids\n", unknownIds.size());
         System.out.println(String.join(",", unknownIds));
 
-        return result;
+        return new OdPairs(count, originIndices, destinationIndices);
     }
 
-    private static void saveBestPaths(
-            List<Pair<Integer, Integer>> pathsToSave,
+    static void saveBestPaths(
+            OdPairs pathsToSave,
             FloydWarshallOutput output,
-            File outputPath) throws IOException {
+            File outputPath,
+            String format,
+            int threads) throws IOException {
         long startTimeMs = System.currentTimeMillis();
-        System.out.printf("Saving shortest paths to %s\n", outputPath.getAbsolutePath());
-        PrintStream wr = new PrintStream(new FileOutputStream(outputPath));
-
-        final int size = output.indexToId.length;
-        int countLinesWritten = 0;
-
-        for (Pair<Integer, Integer> odPair : pathsToSave) {
-            int fromIndex = odPair.getLeft();
-            String originId = output.indexToId[fromIndex];
-
-            int toIndex = odPair.getRight();
-            String destinationId = output.indexToId[toIndex];
-
-            double distance = output.bestDistances[fromIndex][toIndex];
+        System.out.printf("Saving shortest paths to %s (%s)\n", outputPath.getAbsolutePath(), format);
 
-            if (distance != Double.POSITIVE_INFINITY) {
-                wr.printf("%s,%s,%f,", originId, destinationId, distance);
-                outputBestPath(fromIndex, toIndex, output, wr);
-                wr.println();
-
-                countLinesWritten++;
-            }
-        }
-        wr.close();
+        long countLinesWritten = format.equals("binary")
+                ? new BinaryResultWriter(output, threads).write(pathsToSave, outputPath)
+                : new BestPathWriter(output, threads).write(pathsToSave, outputPath);
 
         long takenMs = System.currentTimeMillis() - startTimeMs;
         System.out.printf("Wrote %,d output records in %,d[ms]\n", countLinesWritten, takenMs);
     }
 
-    // Recursive function. Output node in the order they need to be passed to create the best path.
-    private static void outputBestPath(
-            int originIndex, int destinationIndex,
-            FloydWarshallOutput output,
-            PrintStream wr) {
-        int viaNode = output.previousNodeIndex[originIndex][destinationIndex];
-        if (viaNode == FloydWarshallOutput.nullNodeIndex) {
-            return;
-        }
-
-        // There is a predecessor path from originIndex to previous - output that first.
-        outputBestPath(originIndex, viaNode, output, wr);
-
-        // output the current node id on the path.
-        String viaNodeId = output.indexToId[viaNode];
-        wr.printf("%s;", viaNodeId);
+    // The -pathCache cache, or null if not caching.
+    private static PathCache pathCache(CommandLine cli) {
+        return cli.hasOption("pathCache") ? new PathCache(Integer.parseInt(cli.getOptionValue("pathCache"))) : null;
     }
 }
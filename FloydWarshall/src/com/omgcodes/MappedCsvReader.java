@@ -0,0 +1,264 @@
+package com.omgcodes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Streaming CSV reader over a memory mapped file, one record at a time, with no per field / per record objects.
+ * Fields can be interned into an IdTable or parsed as doubles straight from the mapped bytes.
+ * Handles \n, \r\n and \r line ends, skips empty lines, and supports double quoted fields ("" is an escaped quote),
+ * as CSVFormat.DEFAULT does. The file is mapped in windows, so can be larger than 2GB.
+ */
+class MappedCsvReader implements Closeable {
+    private static final long windowBytes = 1L << 30;
+    private static final int maxFields = 64;
+
+    // Powers of 10 that are exact as doubles.
+    private static final double[] exactPowersOf10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final long maxExactMantissa = 1L << 53;
+
+    private final File file;
+    private final Charset charset;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long fileLength;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    // Position in window of the next unread byte.
+    private int position;
+    private long lineNumber;
+
+    // Current record. Quoted fields keep their bounds inside the quotes, and are unescaped on access.
+    private int fieldCount;
+    private final int[] fieldStarts = new int[maxFields];
+    private final int[] fieldEnds = new int[maxFields];
+    private final boolean[] fieldQuoted = new boolean[maxFields];
+
+    public MappedCsvReader(File file, Charset charset) throws IOException {
+        this.file = file;
+        this.charset = charset;
+        this.raf = new RandomAccessFile(file, "r");
+        this.channel = raf.getChannel();
+        this.fileLength = channel.size();
+        mapWindow(0);
+    }
+
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    // Rough record count, for sizing arrays before reading.
+    public long estimateRecords(int bytesPerRecord) {
+        return fileLength / Math.max(1, bytesPerRecord) + 1;
+    }
+
+    private void mapWindow(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowBytes, fileLength - start));
+        position = 0;
+    }
+
+    // Advance to the next non-empty record. Returns false at end of file.
+    public boolean nextRecord() throws IOException {
+        while (true) {
+            if (windowStart + position >= fileLength) {
+                return false;
+            }
+            // Remap so a whole record is in the window, unless this window already reaches the end of the file.
+            boolean windowReachesEnd = windowStart + window.limit() >= fileLength;
+            if (!windowReachesEnd && (position > window.limit() / 2)) {
+                mapWindow(windowStart + position);
+            }
+
+            lineNumber++;
+            int recordEnd = parseRecord();
+            if (recordEnd < 0) {
+                if (windowReachesEnd || (position == 0)) {
+                    throw new IOException(String.format("%s line %,d: record longer than %,d bytes or unterminated quote",
+                            file.getAbsolutePath(), lineNumber, window.limit()));
+                }
+                lineNumber--;
+                mapWindow(windowStart + position);
+                continue;
+            }
+
+            boolean empty = (fieldCount == 1) && !fieldQuoted[0] && (fieldStarts[0] == fieldEnds[0]);
+            position = recordEnd;
+            if (!empty) {
+                return true;
+            }
+        }
+    }
+
+    // Splits the record starting at position into fields. Returns the position after its line end,
+    // or -1 if the window ends mid record.
+    private int parseRecord() {
+        final int limit = window.limit();
+        boolean atFileEnd = windowStart + limit >= fileLength;
+        int p = position;
+        fieldCount = 0;
+        while (true) {
+            if (fieldCount == maxFields) {
+                throw new IllegalArgumentException(String.format("%s line %,d: more than %d fields",
+                        file.getAbsolutePath(), lineNumber, maxFields));
+            }
+            int field = fieldCount++;
+            if ((p < limit) && (window.get(p) == '"')) {
+                fieldQuoted[field] = true;
+                fieldStarts[field] = ++p;
+                while (true) {
+                    if (p >= limit) {
+                        return -1;
+                    }
+                    if (window.get(p) == '"') {
+                        if ((p + 1 < limit) && (window.get(p + 1) == '"')) {
+                            p += 2;
+                            continue;
+                        }
+                        if ((p + 1 >= limit) && !atFileEnd) {
+                            return -1;
+                        }
+                        break;
+                    }
+                    p++;
+                }
+                fieldEnds[field] = p++;
+            } else {
+                fieldQuoted[field] = false;
+                fieldStarts[field] = p;
+                while ((p < limit) && (window.get(p) != ',') && (window.get(p) != '\n') && (window.get(p) != '\r')) {
+                    p++;
+                }
+                fieldEnds[field] = p;
+            }
+
+            if (p >= limit) {
+                return atFileEnd ? p : -1;
+            }
+            byte next = window.get(p);
+            if (next == ',') {
+                p++;
+            } else if (next == '\n') {
+                return p + 1;
+            } else if (next == '\r') {
+                if (p + 1 < limit) {
+                    return (window.get(p + 1) == '\n') ? p + 2 : p + 1;
+                }
+                return atFileEnd ? p + 1 : -1;
+            } else {
+                throw new IllegalArgumentException(String.format("%s line %,d: unexpected character after quoted field",
+                        file.getAbsolutePath(), lineNumber));
+            }
+        }
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    private void checkField(int field) {
+        if (field >= fieldCount) {
+            throw new IllegalArgumentException(String.format("%s line %,d: expected at least %d fields, found %d",
+                    file.getAbsolutePath(), lineNumber, field + 1, fieldCount));
+        }
+    }
+
+    public String getString(int field) {
+        checkField(field);
+        byte[] bytes = new byte[fieldEnds[field] - fieldStarts[field]];
+        int length = 0;
+        for (int p = fieldStarts[field]; p < fieldEnds[field]; p++) {
+            bytes[length++] = window.get(p);
+            if (fieldQuoted[field] && (window.get(p) == '"')) {
+                p++; // Skip the second quote of an escaped pair.
+            }
+        }
+        return new String(bytes, 0, length, charset);
+    }
+
+    // Index of the field's id in ids, adding it if not present.
+    public int intern(int field, IdTable ids) {
+        checkField(field);
+        if (fieldQuoted[field]) {
+            return ids.intern(getString(field));
+        }
+        return ids.intern(window, fieldStarts[field], fieldEnds[field]);
+    }
+
+    // Index of the field's id in ids, or -1 if not present.
+    public int lookup(int field, IdTable ids) {
+        checkField(field);
+        if (fieldQuoted[field]) {
+            return ids.indexOf(getString(field));
+        }
+        return ids.indexOf(window, fieldStarts[field], fieldEnds[field]);
+    }
+
+    // Parses plain decimals ([-]digits[.digits]) directly. As the mantissa and power of 10 are then both exact
+    // doubles, the single division is correctly rounded, so gives the same result as Double.parseDouble.
+    // Anything else (exponents, whitespace, long mantissas) falls back to Double.parseDouble.
+    public double getDouble(int field) {
+        checkField(field);
+        int p = fieldStarts[field];
+        final int end = fieldEnds[field];
+        boolean negative = false;
+        if ((p < end) && (window.get(p) == '-')) {
+            negative = true;
+            p++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; p < end; p++) {
+            byte c = window.get(p);
+            if ((c >= '0') && (c <= '9')) {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                if (mantissa > maxExactMantissa) {
+                    break;
+                }
+            } else if ((c == '.') && (fractionDigits < 0)) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+
+        boolean simple = (p == end) && (digits > 0) && !fieldQuoted[field]
+                && (mantissa <= maxExactMantissa) && (fractionDigits < exactPowersOf10.length);
+        if (!simple) {
+            return parseDouble(field);
+        }
+        double value = (fractionDigits > 0) ? mantissa / exactPowersOf10[fractionDigits] : (double) mantissa;
+        return negative ? -value : value;
+    }
+
+    private double parseDouble(int field) {
+        String text = getString(field);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("%s line %,d: '%s' is not a number",
+                    file.getAbsolutePath(), lineNumber, text), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        raf.close();
+    }
+}
@@ -0,0 +1,138 @@
+package com.omgcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Floyd Warshall with the matrices in a MappedMatrixStore, for graphs whose matrices do not fit on heap.
+ * Row k is copied onto the heap once per k. Other rows are copied in, relaxed in parallel (RowParallelDriver phases),
+ * and only written back if something improved. The comparisons per cell are the same as the serial engine.
+ * Each worker thread copies rows into its own pair of scratch rows, allocated once per run, so relaxing allocates
+ * nothing per row or per k.
+ * If the file already holds a completed result for the same graph, it is reused without recalculating.
+ */
+class MappedFloydWarshall {
+    private final Graph graph;
+    private final File file;
+    private final int threads;
+
+    private ProgressListener progressListener = new LogProgressListener();
+
+    private MappedMatrixStore store;
+    private double[] distanceRowK;
+    private int[] previousRowK;
+    // Per worker copies of row i.
+    private ThreadLocal<double[]> distanceRowsI;
+    private ThreadLocal<int[]> previousRowsI;
+
+    public MappedFloydWarshall(Graph graph, File file, int threads) {
+        this.graph = graph;
+        this.file = file;
+        this.threads = ThreadCount.check(threads);
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public FloydWarshallOutput run() throws IOException {
+        long startTimeMs = System.currentTimeMillis();
+        final String[] indexToId = graph.indexToId();
+        final int size = graph.size();
+        final long fingerprint = graph.fingerprint();
+
+        store = MappedMatrixStore.openComplete(file, size, fingerprint);
+        if (store != null) {
+            System.out.printf("Reusing completed matrices in %s\n", file.getAbsolutePath());
+            return new FloydWarshallOutput(indexToId, store);
+        }
+
+        System.out.printf("Calculating mapped Floyd - Warshall with %,d elements in %s (%,d bytes), %d thread(s)\n",
+                (long) size * size, file.getAbsolutePath(), MappedMatrixStore.fileLength(size), threads);
+        store = MappedMatrixStore.create(file, size, fingerprint);
+        seed(size);
+
+        distanceRowK = new double[size];
+        previousRowK = new int[size];
+        distanceRowsI = ThreadLocal.withInitial(() -> new double[size]);
+        previousRowsI = ThreadLocal.withInitial(() -> new int[size]);
+        ProgressTracker tracker = new ProgressTracker("mapped", size, 0, progressListener);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            for (int k = 0; k < size; k++) {
+                store.readRow(k, distanceRowK, previousRowK);
+                RowParallelDriver.relaxThrough(size, k, this::relaxRows, pool, tracker);
+                tracker.completed(k + 1);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        store.markComplete();
+        tracker.finish();
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to calculate mapped Floyd Warshall\n", takenMs);
+
+        return new FloydWarshallOutput(indexToId, store);
+    }
+
+    // +Inf / nullNodeIndex everywhere, except direct arcs. Written a row at a time.
+    private void seed(int size) {
+        double[] distances = new double[size];
+        int[] previous = new int[size];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        Arrays.fill(previous, FloydWarshallOutput.nullNodeIndex);
+        for (int i = 0; i < size; i++) {
+            for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                distances[graph.targets[a]] = graph.weights[a];
+            }
+            store.writeRow(i, distances, previous);
+            for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                distances[graph.targets[a]] = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    // Relax rows [start, end) through k, each copied into this thread's scratch rows, and written back if improved.
+    // Row k is relaxed in place in its heap copy, read before the phase, as the serial engine relaxes it in place.
+    private long relaxRows(int start, int end, int k) {
+        long improvements = 0;
+        for (int i = start; i < end; i++) {
+            double distIToK = (i == k) ? distanceRowK[k] : store.getBestDistance(i, k);
+            if (distIToK == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+            double[] distanceRowI = (i == k) ? distanceRowK : distanceRowsI.get();
+            int[] previousRowI = (i == k) ? previousRowK : previousRowsI.get();
+            if (i != k) {
+                store.readRow(i, distanceRowI, previousRowI);
+            }
+            int improved = relaxRow(distanceRowI, previousRowI, distIToK, k);
+            if (improved > 0) {
+                store.writeRow(i, distanceRowI, previousRowI);
+                improvements += improved;
+            }
+        }
+        return improvements;
+    }
+
+    // Relax row i through k, using the heap copy of row k. Returns the number of cells improved.
+    private int relaxRow(double[] distanceRowI, int[] previousRowI, double distIToK, int k) {
+        int improved = 0;
+        for (int j = 0; j < distanceRowI.length; j++) {
+            double distKToJ = distanceRowK[j];
+            if (distKToJ != Double.POSITIVE_INFINITY) {
+                double distIToJViaK = distIToK + distKToJ;
+                if (distIToJViaK < distanceRowI[j]) {
+                    distanceRowI[j] = distIToJViaK;
+                    int previousKToJ = previousRowK[j];
+                    previousRowI[j] = (previousKToJ == FloydWarshallOutput.nullNodeIndex) ? k : previousKToJ;
+                    improved++;
+                }
+            }
+        }
+        return improved;
+    }
+}
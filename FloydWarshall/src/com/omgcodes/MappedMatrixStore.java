@@ -0,0 +1,173 @@
+package com.omgcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MatrixStore kept in a memory mapped file, so the matrices are off heap and can exceed both the heap and the
+ * 2^31 element limit of a Java array.
+ * File layout: a headerBytes header, then bestDistances row-major as doubles, then previousNodeIndex row-major as ints.
+ * The header records the graph fingerprint, and whether the calculation completed, so a finished file can be
+ * reopened on a later run against the same graph instead of recalculating.
+ * Each mapping covers a whole number of rows, to keep every mapping under 2GB.
+ * Reads and row writes are thread safe, provided no two threads write the same row.
+ */
+class MappedMatrixStore implements MatrixStore {
+    private static final long magic = 0x4F4D4746574D4150L; // "OMGFWMAP"
+    private static final int version = 1;
+    private static final int headerBytes = 64;
+    private static final int completeOffset = 24;
+    private static final long maxChunkBytes = 1L << 30;
+
+    private final int size;
+    private final int rowsPerChunk;
+    private final MappedByteBuffer header;
+    // Every mapping, so all can be forced to disk. distanceChunks / previousChunks are typed views of these.
+    private final MappedByteBuffer[] mappings;
+    private final DoubleBuffer[] distanceChunks;
+    private final IntBuffer[] previousChunks;
+
+    private MappedMatrixStore(FileChannel channel, int size) throws IOException {
+        this.size = size;
+        this.rowsPerChunk = (int) Math.max(1, maxChunkBytes / ((long) size * Double.BYTES));
+        int chunkCount = (size + rowsPerChunk - 1) / rowsPerChunk;
+
+        header = channel.map(FileChannel.MapMode.READ_WRITE, 0, headerBytes);
+        header.order(ByteOrder.nativeOrder());
+
+        final long distanceStart = headerBytes;
+        final long previousStart = distanceStart + (long) size * size * Double.BYTES;
+        mappings = new MappedByteBuffer[2 * chunkCount];
+        distanceChunks = new DoubleBuffer[chunkCount];
+        previousChunks = new IntBuffer[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            long firstRow = (long) c * rowsPerChunk;
+            long rows = Math.min(rowsPerChunk, size - firstRow);
+            mappings[2 * c] = map(channel, distanceStart + firstRow * size * Double.BYTES, rows * size * Double.BYTES);
+            distanceChunks[c] = mappings[2 * c].asDoubleBuffer();
+            mappings[2 * c + 1] = map(channel, previousStart + firstRow * size * Integer.BYTES, rows * size * Integer.BYTES);
+            previousChunks[c] = mappings[2 * c + 1].asIntBuffer();
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        MappedByteBuffer result = channel.map(FileChannel.MapMode.READ_WRITE, position, length);
+        result.order(ByteOrder.nativeOrder());
+        return result;
+    }
+
+    public static long fileLength(int size) {
+        return headerBytes + (long) size * size * (Double.BYTES + Integer.BYTES);
+    }
+
+    // Creates (or truncates) file, ready to be seeded and calculated.
+    public static MappedMatrixStore create(File file, int size, long fingerprint) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.setLength(fileLength(size));
+            MappedMatrixStore result = new MappedMatrixStore(raf.getChannel(), size);
+            result.header.putLong(0, magic);
+            result.header.putInt(8, version);
+            result.header.putInt(12, size);
+            result.header.putLong(16, fingerprint);
+            result.header.putInt(completeOffset, 0);
+            return result;
+        }
+    }
+
+    // Opens a completed file for the same graph, or returns null if file is missing, incomplete, or for another graph.
+    public static MappedMatrixStore openComplete(File file, int size, long fingerprint) throws IOException {
+        if (!file.isFile() || (file.length() != fileLength(size))) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            MappedMatrixStore result = new MappedMatrixStore(raf.getChannel(), size);
+            boolean matches = (result.header.getLong(0) == magic)
+                    && (result.header.getInt(8) == version)
+                    && (result.header.getInt(12) == size)
+                    && (result.header.getLong(16) == fingerprint)
+                    && result.isComplete();
+            return matches ? result : null;
+        }
+    }
+
+    public boolean isComplete() {
+        return header.getInt(completeOffset) != 0;
+    }
+
+    // Flushes all rows to disk, then flags the file as holding a finished result.
+    public void markComplete() {
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+        header.putInt(completeOffset, 1);
+        header.force();
+    }
+
+    // Flags the file as mid-update, so it is not reused if the update does not finish.
+    public void markIncomplete() {
+        header.putInt(completeOffset, 0);
+        header.force();
+    }
+
+    public long getFingerprint() {
+        return header.getLong(16);
+    }
+
+    // Replaces the fingerprint, e.g. after the stored result has been updated for a changed graph.
+    public void setFingerprint(long fingerprint) {
+        header.putLong(16, fingerprint);
+        header.force();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getBestDistance(int i, int j) {
+        return distanceChunks[i / rowsPerChunk].get((i % rowsPerChunk) * size + j);
+    }
+
+    @Override
+    public int getPreviousNodeIndex(int i, int j) {
+        return previousChunks[i / rowsPerChunk].get((i % rowsPerChunk) * size + j);
+    }
+
+    @Override
+    public void set(int i, int j, double bestDistance, int previousNodeIndex) {
+        distanceChunks[i / rowsPerChunk].put((i % rowsPerChunk) * size + j, bestDistance);
+        previousChunks[i / rowsPerChunk].put((i % rowsPerChunk) * size + j, previousNodeIndex);
+    }
+
+    public void readRow(int i, double[] bestDistances, int[] previousNodeIndex) {
+        int offset = (i % rowsPerChunk) * size;
+
+        DoubleBuffer distanceRow = distanceChunks[i / rowsPerChunk].duplicate();
+        distanceRow.position(offset);
+        distanceRow.get(bestDistances, 0, size);
+
+        IntBuffer previousRow = previousChunks[i / rowsPerChunk].duplicate();
+        previousRow.position(offset);
+        previousRow.get(previousNodeIndex, 0, size);
+    }
+
+    public void writeRow(int i, double[] bestDistances, int[] previousNodeIndex) {
+        int offset = (i % rowsPerChunk) * size;
+
+        DoubleBuffer distanceRow = distanceChunks[i / rowsPerChunk].duplicate();
+        distanceRow.position(offset);
+        distanceRow.put(bestDistances, 0, size);
+
+        IntBuffer previousRow = previousChunks[i / rowsPerChunk].duplicate();
+        previousRow.position(offset);
+        previousRow.put(previousNodeIndex, 0, size);
+    }
+}
@@ -0,0 +1,18 @@
+package com.omgcodes;
+
+/**
+ * Storage for the best distance and previous node matrices of an all pairs calculation.
+ * Lets the result live on heap (double[][], row-major arrays) or off heap (memory mapped files).
+ */
+interface MatrixStore {
+    int size();
+
+    // Length of the best path from i to j, +Inf if there is none.
+    double getBestDistance(int i, int j);
+
+    // Last node on the best path from i to j. nullNodeIndex if there is a direct link, or if no path exists.
+    int getPreviousNodeIndex(int i, int j);
+
+    // Overwrite cell (i, j), e.g. when updating an existing result.
+    void set(int i, int j, double bestDistance, int previousNodeIndex);
+}
@@ -0,0 +1,56 @@
+package com.omgcodes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Appends progress samples to a CSV metrics file, a line per sample, flushed as written so the file can be
+ * followed while a run is in progress. Columns:
+ * timestampMs,engine,size,completedNodes,elapsedMs,relaxations,improvements,cellsPerSecond,etaMs,finished
+ * with improvements and etaMs -1 where unknown. completedNodes counts intermediate nodes, except for the dijkstra
+ * (sources) and condensed (rows) engines, see ProgressSample. The header is only written to a new or empty file,
+ * so repeated runs can share one file. Numbers are formatted in Locale.ROOT, whatever the default locale.
+ */
+class MetricsFileListener implements ProgressListener, Closeable {
+    private static final String header =
+            "timestampMs,engine,size,completedNodes,elapsedMs,relaxations,improvements,cellsPerSecond,etaMs,finished";
+
+    private final PrintWriter writer;
+
+    public MetricsFileListener(File file) throws IOException {
+        boolean empty = !file.isFile() || (file.length() == 0);
+        writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        if (empty) {
+            writer.println(header);
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void progress(ProgressSample sample) {
+        write(sample, false);
+    }
+
+    @Override
+    public void finished(ProgressSample sample) {
+        write(sample, true);
+    }
+
+    private synchronized void write(ProgressSample sample, boolean finished) {
+        writer.printf(Locale.ROOT, "%d,%s,%d,%d,%d,%d,%d,%.0f,%d,%b\n",
+                System.currentTimeMillis(), sample.engine, sample.size, sample.completedNodes, sample.elapsedMs,
+                sample.relaxations, sample.improvements, sample.cellsPerSecond, sample.etaMs, finished);
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() {
+        writer.close();
+    }
+}
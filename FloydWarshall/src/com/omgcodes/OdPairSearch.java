@@ -0,0 +1,205 @@
+package com.omgcodes;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Best paths for a list of OD pairs, without an all pairs matrix.
+ * Pairs are taken in chunks, in OD pair order. Within a chunk, pairs are grouped by origin, and one Dijkstra search
+ * (stopping once that origin's destinations are settled) is run per distinct origin, in parallel.
+ * Output is written in OD pair order, in the same format as Main.saveBestPaths(), a chunk at a time as each
+ * completes, while the next chunk is searched. Memory is O(threads * N) plus the lines of the chunks in flight,
+ * rather than O(N^2), or lines for every pair.
+ */
+class OdPairSearch {
+    // Pairs per chunk. Larger chunks share each origin's search across more pairs, but hold more lines.
+    private static final int pairsPerChunk = 256 * 1024;
+    // Chunks searched or waiting to be written at once, so writing one overlaps searching the next.
+    private static final int maxChunksInFlight = 2;
+    // Distinct origins per fork-join leaf task. Each leaf allocates one search workspace.
+    private static final int originsPerTask = 16;
+
+    private final Graph graph;
+    private final int threads;
+
+    private byte[][] idBytes;
+
+    public OdPairSearch(Graph graph, int threads) {
+        this.graph = graph;
+        this.threads = ThreadCount.check(threads);
+    }
+
+    public void run(OdPairs pathsToSave, File outputPath) throws IOException {
+        long startTimeMs = System.currentTimeMillis();
+        idBytes = BestPathWriter.encodeIds(graph.indexToId());
+        DijkstraSearch.checkNonNegative(graph);
+        final int chunkCount = (pathsToSave.count + pairsPerChunk - 1) / pairsPerChunk;
+        System.out.printf("Searching for %,d OD Pairs in %,d chunk(s), %d thread(s)\n",
+                pathsToSave.count, chunkCount, threads);
+        System.out.printf("Saving shortest paths to %s\n", outputPath.getAbsolutePath());
+
+        long countLinesWritten = 0;
+        long searches = 0;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try (OutputStream wr = new BufferedOutputStream(new FileOutputStream(outputPath), 1 << 20)) {
+            ArrayDeque<ForkJoinTask<Chunk>> inFlight = new ArrayDeque<ForkJoinTask<Chunk>>();
+            int nextChunk = 0;
+            while ((nextChunk < chunkCount) || !inFlight.isEmpty()) {
+                while ((nextChunk < chunkCount) && (inFlight.size() < maxChunksInFlight)) {
+                    final int start = nextChunk * pairsPerChunk;
+                    final int end = Math.min(pathsToSave.count, start + pairsPerChunk);
+                    inFlight.add(pool.submit(() -> search(pathsToSave, start, end)));
+                    nextChunk++;
+                }
+
+                Chunk chunk = inFlight.remove().join();
+                for (byte[] line : chunk.lines) {
+                    if (line != null) {
+                        wr.write(line);
+                        countLinesWritten++;
+                    }
+                }
+                searches += chunk.origins.length;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.printf("Wrote %,d output records\n", countLinesWritten);
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to search and save OD Pairs, %,d searches\n", takenMs, searches);
+    }
+
+    private Chunk search(OdPairs pathsToSave, int start, int end) {
+        Chunk chunk = new Chunk(pathsToSave, start, end);
+        new OriginRange(chunk, 0, chunk.origins.length).invoke();
+        return chunk;
+    }
+
+    // Pairs [start, end), grouped by origin, and their formatted lines once searched.
+    private class Chunk {
+        // Pair offsets within the chunk, grouped by origin: pairsByOrigin[originStarts[o] .. originStarts[o + 1])
+        // share origins[o].
+        final int[] origins;
+        final int[] originStarts;
+        final int[] pairsByOrigin;
+        int maxPairsPerOrigin;
+
+        final int[] destinations;
+        // Formatted line per pair, or null if it has no path.
+        final byte[][] lines;
+
+        // Counting sort of the pairs by origin. Distinct origins are kept in order of first appearance.
+        Chunk(OdPairs pathsToSave, int start, int end) {
+            final int size = graph.size();
+            final int pairCount = end - start;
+
+            destinations = new int[pairCount];
+            lines = new byte[pairCount][];
+            int[] pairOrigins = new int[pairCount];
+            int[] countByNode = new int[size];
+            int distinctOrigins = 0;
+            for (int p = 0; p < pairCount; p++) {
+                pairOrigins[p] = pathsToSave.originIndex[start + p];
+                destinations[p] = pathsToSave.destinationIndex[start + p];
+                if (countByNode[pairOrigins[p]]++ == 0) {
+                    distinctOrigins++;
+                }
+            }
+
+            // Lay out each origin's run of pairs, and track its next write position in nextByNode.
+            origins = new int[distinctOrigins];
+            originStarts = new int[distinctOrigins + 1];
+            int[] nextByNode = new int[size];
+            int o = 0;
+            int position = 0;
+            for (int p = 0; p < pairCount; p++) {
+                int origin = pairOrigins[p];
+                if (countByNode[origin] > 0) {
+                    maxPairsPerOrigin = Math.max(maxPairsPerOrigin, countByNode[origin]);
+                    origins[o] = origin;
+                    originStarts[o] = position;
+                    nextByNode[origin] = position;
+                    position += countByNode[origin];
+                    countByNode[origin] = 0;
+                    o++;
+                }
+            }
+            originStarts[distinctOrigins] = position;
+
+            pairsByOrigin = new int[pairCount];
+            for (int p = 0; p < pairCount; p++) {
+                pairsByOrigin[nextByNode[pairOrigins[p]]++] = p;
+            }
+        }
+    }
+
+    // viaNodes is scratch space of at least N entries, buffer is scratch space for the line.
+    private byte[] formatLine(int originIndex, int destinationIndex,
+                              double[] bestDistances, int[] previousNodeIndex, int[] viaNodes, ByteLineBuffer buffer) {
+        double distance = bestDistances[destinationIndex];
+        if (distance == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        // Walk back from the destination. BestPathWriter outputs them in path order.
+        int viaCount = 0;
+        for (int via = previousNodeIndex[destinationIndex];
+             via != FloydWarshallOutput.nullNodeIndex;
+             via = previousNodeIndex[via]) {
+            viaNodes[viaCount++] = via;
+        }
+
+        buffer.clear();
+        BestPathWriter.appendLine(buffer, idBytes, originIndex, destinationIndex, distance, viaNodes, viaCount);
+        return buffer.toByteArray();
+    }
+
+    private class OriginRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int start;
+        private final int end;
+
+        OriginRange(Chunk chunk, int start, int end) {
+            this.chunk = chunk;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= originsPerTask) {
+                DijkstraSearch search = new DijkstraSearch(graph);
+                double[] bestDistances = new double[graph.size()];
+                int[] previousNodeIndex = new int[graph.size()];
+                int[] targets = new int[chunk.maxPairsPerOrigin];
+                int[] viaNodes = new int[graph.size()];
+                ByteLineBuffer buffer = new ByteLineBuffer(256);
+                for (int o = start; o < end; o++) {
+                    int targetCount = 0;
+                    for (int s = chunk.originStarts[o]; s < chunk.originStarts[o + 1]; s++) {
+                        targets[targetCount++] = chunk.destinations[chunk.pairsByOrigin[s]];
+                    }
+                    search.runToTargets(chunk.origins[o], bestDistances, previousNodeIndex, targets, targetCount);
+                    for (int s = chunk.originStarts[o]; s < chunk.originStarts[o + 1]; s++) {
+                        int p = chunk.pairsByOrigin[s];
+                        chunk.lines[p] = formatLine(chunk.origins[o], chunk.destinations[p],
+                                bestDistances, previousNodeIndex, viaNodes, buffer);
+                    }
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new OriginRange(chunk, start, middle), new OriginRange(chunk, middle, end));
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.omgcodes;
+
+/**
+ * Container for the OD pairs to output, as parallel arrays of node indices. No logic.
+ */
+class OdPairs {
+    public final int count;
+    public final int[] originIndex;
+    public final int[] destinationIndex;
+
+    public OdPairs(int count, int[] originIndex, int[] destinationIndex) {
+        this.count = count;
+        this.originIndex = originIndex;
+        this.destinationIndex = destinationIndex;
+    }
+}
@@ -0,0 +1,169 @@
+package com.omgcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Row parallel Floyd Warshall over row-major matrices, one RowParallelDriver phase per intermediate node.
+ * Every cell sees exactly the same sequence of comparisons as the serial engine, so results
+ * (including previousNodeIndex tie breaks) are identical.
+ * Optionally checkpoints the matrices every so many intermediate nodes or minutes, and resumes from a checkpoint.
+ * A checkpoint copies the matrices to a snapshot, which a background thread writes while the run carries on, so the
+ * run only stalls for the copy, or if the previous checkpoint is still being written. The snapshot doubles memory.
+ */
+class ParallelFloydWarshall {
+    private final Graph graph;
+    private final int threads;
+    private final boolean branchFree;
+
+    // Checkpointing is off if checkpointFile is null.
+    private File checkpointFile;
+    private int checkpointIterations;
+    private long checkpointIntervalMs;
+    private boolean resume;
+
+    private ProgressListener progressListener = new LogProgressListener();
+
+    private RowMajorMatrices matrices;
+
+    public ParallelFloydWarshall(Graph graph, int threads, boolean branchFree) {
+        this.graph = graph;
+        this.threads = ThreadCount.check(threads);
+        this.branchFree = branchFree;
+    }
+
+    // Saves a checkpoint to file after every iterations intermediate nodes, or once intervalMs has passed since the
+    // last one, whichever is first. If resume is set, starts from the checkpoint in file, if it is for this graph.
+    public void setCheckpoint(File file, int iterations, long intervalMs, boolean resume) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Checkpoint iterations must be positive: " + iterations);
+        }
+        if (intervalMs < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be positive: " + intervalMs);
+        }
+        this.checkpointFile = file;
+        this.checkpointIterations = iterations;
+        this.checkpointIntervalMs = intervalMs;
+        this.resume = resume;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public FloydWarshallOutput run() throws IOException {
+        long startTimeMs = System.currentTimeMillis();
+        final String[] indexToId = graph.indexToId();
+        final long fingerprint = (checkpointFile != null) ? graph.fingerprint() : 0;
+
+        int firstK = 0;
+        matrices = null;
+        if ((checkpointFile != null) && resume) {
+            FloydWarshallCheckpoint checkpoint = FloydWarshallCheckpoint.load(checkpointFile, graph.size(), fingerprint);
+            if (checkpoint != null) {
+                matrices = checkpoint.matrices;
+                firstK = checkpoint.nextK;
+                System.out.printf("Resuming from intermediate node %,d in %s\n",
+                        firstK, checkpointFile.getAbsolutePath());
+            } else {
+                System.out.printf("No checkpoint for this graph in %s, starting from the beginning\n",
+                        checkpointFile.getAbsolutePath());
+            }
+        }
+        if (matrices == null) {
+            matrices = RowMajorMatrices.seed(graph);
+        }
+        matrices.setBranchFree(branchFree);
+        final int size = matrices.size;
+        System.out.printf("Calculating parallel Floyd - Warshall with %,d elements, %d thread(s)%s\n",
+                (long) size * size, threads, branchFree ? ", branch free kernel" : "");
+
+        ProgressTracker tracker = new ProgressTracker(
+                branchFree ? "parallel-branchFree" : "parallel", size, firstK, progressListener);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ExecutorService checkpointWriter = (checkpointFile != null) ? Executors.newSingleThreadExecutor() : null;
+        try {
+            // Only one checkpoint is written at a time, so one snapshot is enough.
+            RowMajorMatrices snapshot = null;
+            Future<?> pendingCheckpoint = null;
+            long lastCheckpointMs = System.currentTimeMillis();
+            for (int k = firstK; k < size; k++) {
+                relaxThrough(matrices, k, pool, tracker);
+                tracker.completed(k + 1);
+
+                boolean checkpointDue = (checkpointFile != null) && (k + 1 < size)
+                        && ((((k + 1 - firstK) % checkpointIterations) == 0)
+                        || (System.currentTimeMillis() - lastCheckpointMs >= checkpointIntervalMs));
+                if (checkpointDue) {
+                    long checkpointStartMs = System.currentTimeMillis();
+                    awaitCheckpoint(pendingCheckpoint);
+                    if (snapshot == null) {
+                        snapshot = RowMajorMatrices.empty(size);
+                    }
+                    matrices.copyTo(snapshot);
+                    lastCheckpointMs = System.currentTimeMillis();
+                    System.out.printf("%,8d[ms] : Checkpoint after intermediate node %,d stalled the run %,d[ms]\n",
+                            lastCheckpointMs - startTimeMs, k, lastCheckpointMs - checkpointStartMs);
+                    pendingCheckpoint = checkpointWriter.submit(
+                            saveCheckpoint(snapshot, fingerprint, k + 1, startTimeMs));
+                }
+            }
+            // Wait for the last checkpoint, so its file is not deleted mid write and its failure is reported.
+            awaitCheckpoint(pendingCheckpoint);
+        } finally {
+            pool.shutdown();
+            if (checkpointWriter != null) {
+                checkpointWriter.shutdownNow();
+            }
+        }
+        tracker.finish();
+        // The run is complete, so the checkpoint is no longer needed, and can be large.
+        if ((checkpointFile != null) && checkpointFile.delete()) {
+            System.out.printf("Deleted checkpoint %s\n", checkpointFile.getAbsolutePath());
+        }
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to calculate parallel Floyd Warshall\n", takenMs);
+
+        return new FloydWarshallOutput(indexToId, matrices);
+    }
+
+    // Writes snapshot, taken after intermediate nodes up to nextK - 1, to checkpointFile.
+    private Callable<Void> saveCheckpoint(RowMajorMatrices snapshot, long fingerprint, int nextK, long startTimeMs) {
+        return () -> {
+            long saveStartMs = System.currentTimeMillis();
+            FloydWarshallCheckpoint.save(checkpointFile, snapshot, fingerprint, nextK);
+            long savedMs = System.currentTimeMillis();
+            System.out.printf("%,8d[ms] : Checkpoint after intermediate node %,d written in %,d[ms]\n",
+                    savedMs - startTimeMs, nextK - 1, savedMs - saveStartMs);
+            return null;
+        };
+    }
+
+    // Waits for checkpoint, which may be null, to be written.
+    private void awaitCheckpoint(Future<?> checkpoint) throws IOException {
+        if (checkpoint == null) {
+            return;
+        }
+        try {
+            checkpoint.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted writing checkpoint " + checkpointFile.getAbsolutePath(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed writing checkpoint " + checkpointFile.getAbsolutePath(), e.getCause());
+        }
+    }
+
+    // Relaxes every row of matrices through intermediate node k, on pool. tracker may be null.
+    static void relaxThrough(RowMajorMatrices matrices, int k, ForkJoinPool pool, ProgressTracker tracker) {
+        RowParallelDriver.relaxThrough(matrices.size, k,
+                (start, end, kk) -> matrices.relax(start, end, 0, matrices.size, kk, kk + 1), pool, tracker);
+    }
+}
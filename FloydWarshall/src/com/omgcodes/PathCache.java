@@ -0,0 +1,119 @@
+package com.omgcodes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded least recently used cache of best paths by OD pair, for OD sets that ask for the same pairs again and
+ * again (e.g. a few hub destinations). Only worth it where a miss costs a search: -serve -odOnly queries and
+ * -hierarchy pairs. Walking previousNodeIndex in an all pairs result is cheaper than a miss, so that is not cached.
+ * Thread safe: pairs are spread over segments, each its own LRU under its own lock, so threads rarely contend.
+ * Segment capacities add up to exactly the capacity. Eviction is per segment, so is approximately, rather than
+ * exactly, least recently used overall.
+ */
+class PathCache {
+    // Most segments, a power of two. Fewer for capacities below this, so each segment holds at least one path.
+    private static final int maxSegmentCount = 16;
+
+    public static class CachedPath {
+        // +Inf if there is no path, with no via nodes.
+        public final double distance;
+        // Via nodes in reverse path order, i.e. last node first, as BestPathWriter.appendLine. Must not be modified.
+        public final int[] viaNodes;
+
+        CachedPath(double distance, int[] viaNodes) {
+            this.distance = distance;
+            this.viaNodes = viaNodes;
+        }
+    }
+
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PathCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Path cache capacity must be positive: " + capacity);
+        }
+        int segmentCount = maxSegmentCount;
+        while (segmentCount > capacity) {
+            segmentCount /= 2;
+        }
+        // The first capacity % segmentCount segments hold one more, to spread the remainder.
+        segments = new Segment[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            segments[s] = new Segment(capacity / segmentCount + ((s < capacity % segmentCount) ? 1 : 0));
+        }
+    }
+
+    // Best path from origin to destination, or null if not cached.
+    public CachedPath get(int origin, int destination) {
+        long key = key(origin, destination);
+        Segment segment = segmentFor(key);
+        CachedPath result;
+        synchronized (segment) {
+            result = segment.get(key);
+        }
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+
+    // Caches the best path from origin to destination, copying viaNodes[0 .. viaCount), in reverse path order.
+    public void put(int origin, int destination, double distance, int[] viaNodes, int viaCount) {
+        int[] copy = new int[viaCount];
+        System.arraycopy(viaNodes, 0, copy, 0, viaCount);
+        CachedPath path = new CachedPath(distance, copy);
+        long key = key(origin, destination);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, path);
+        }
+    }
+
+    // Most paths held at once.
+    public int getCapacity() {
+        int result = 0;
+        for (Segment segment : segments) {
+            result += segment.capacity;
+        }
+        return result;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static long key(int origin, int destination) {
+        return ((long) origin << 32) | (destination & 0xFFFFFFFFL);
+    }
+
+    private Segment segmentFor(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> 60) & (segments.length - 1)];
+    }
+
+    private static class Segment extends LinkedHashMap<Long, CachedPath> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedPath> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.omgcodes;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loopback client for PathQueryServer. See PathQueryServer for the protocol.
+ * Not thread safe. Use one client per thread.
+ */
+class PathQueryClient implements Closeable {
+    // Requests sent ahead of their responses in query(List). Bounded so neither side's socket buffer fills up.
+    private static final int maxInFlight = 256;
+
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    public PathQueryClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        socket.setTcpNoDelay(true);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), 64 * 1024);
+        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    public static String pathRequest(String origin, String destination) {
+        return "PATH," + origin + "," + destination;
+    }
+
+    public static String distanceRequest(String origin, String destination) {
+        return "DIST," + origin + "," + destination;
+    }
+
+    // One request, waiting for its response.
+    public String query(String request) throws IOException {
+        out.write(request);
+        out.write('\n');
+        out.flush();
+        return readResponse();
+    }
+
+    // Pipelined requests. Responses are in request order.
+    public List<String> query(List<String> requests) throws IOException {
+        List<String> responses = new ArrayList<String>(requests.size());
+        int sent = 0;
+        while (responses.size() < requests.size()) {
+            if ((sent < requests.size()) && (sent - responses.size() < maxInFlight)) {
+                while ((sent < requests.size()) && (sent - responses.size() < maxInFlight)) {
+                    out.write(requests.get(sent++));
+                    out.write('\n');
+                }
+                out.flush();
+            }
+            responses.add(readResponse());
+        }
+        return responses;
+    }
+
+    private String readResponse() throws IOException {
+        String response = in.readLine();
+        if (response == null) {
+            throw new EOFException("Server closed the connection");
+        }
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write("QUIT\n");
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.omgcodes;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Answers shortest path queries over a loopback TCP socket, so the graph is loaded and solved once rather than
+ * per Main invocation.
+ * Paths come either from a resident all pairs result, or (for graphs too big for N^2 matrices) from a Dijkstra
+ * search per distinct origin, with the last origin's search kept per connection.
+ *
+ * Line protocol, UTF-8, one request per line, fields comma separated:
+ *  PATH,origin,destination  ->  origin,destination,distance,via1;via2;...;  (as a line of the CSV output)
+ *  DIST,origin,destination  ->  origin,destination,distance
+ *  QUIT                     ->  closes the connection
+ * A pair with no path gives NOPATH,origin,destination, a bad request gives ERROR,message.
+ * With a PathCache, repeated pairs are answered from it, without a search. Meant for per origin search, as a
+ * resident result's lookup is cheaper than a cache miss.
+ * Requests may be pipelined: responses come back in request order, and are only flushed once no more requests
+ * are waiting, so a batch of requests costs one round trip.
+ */
+class PathQueryServer implements Closeable {
+    private final IdTable ids;
+    private final byte[][] idBytes;
+    // Exactly one of output and graph is set.
+    private final FloydWarshallOutput output;
+    private final Graph graph;
+
+    // Optional, null if not caching.
+    private PathCache pathCache;
+
+    private ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+
+    // Serves paths from a resident all pairs result.
+    public PathQueryServer(Graph graph, FloydWarshallOutput output) {
+        this.ids = graph.getIds();
+        this.idBytes = encodeIds(graph.indexToId());
+        this.output = output;
+        this.graph = null;
+    }
+
+    // Serves paths by searching from each query's origin.
+    public PathQueryServer(Graph graph) {
+        DijkstraSearch.checkNonNegative(graph);
+        this.ids = graph.getIds();
+        this.idBytes = encodeIds(graph.indexToId());
+        this.output = null;
+        this.graph = graph;
+    }
+
+    private static byte[][] encodeIds(String[] indexToId) {
+        byte[][] result = new byte[indexToId.length][];
+        for (int i = 0; i < indexToId.length; i++) {
+            result[i] = indexToId[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    public void setPathCache(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    // Binds to port on the loopback address (0 for any free port), returning the bound port.
+    public int bind(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        return serverSocket.getLocalPort();
+    }
+
+    // Accepts connections until closed, serving each on its own thread.
+    public void serve() throws IOException {
+        System.out.printf("Serving %s queries on %s\n",
+                (output != null) ? "all pairs" : "per origin search", serverSocket.getLocalSocketAddress());
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                throw e;
+            }
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        connections.shutdownNow();
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    private void handle(Socket socket) {
+        long queryCount = 0;
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), 64 * 1024);
+             OutputStream out = new BufferedOutputStream(s.getOutputStream(), 64 * 1024)) {
+            s.setTcpNoDelay(true);
+            Lookup lookup = (output != null) ? new MatrixLookup() : new SearchLookup();
+            ByteLineBuffer buffer = new ByteLineBuffer(256);
+            int[] viaNodes = new int[16];
+            String line;
+            while (((line = in.readLine()) != null) && !line.equals("QUIT")) {
+                buffer.clear();
+                viaNodes = answer(line, lookup, buffer, viaNodes);
+                buffer.writeTo(out);
+                queryCount++;
+                // Only flush once the pipeline is drained, so a batch goes back in as few packets as possible.
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            System.out.printf("Connection error: %s\n", e.getMessage());
+        }
+        System.out.printf("Connection closed after %,d queries\n", queryCount);
+    }
+
+    // Appends the response to line to buffer. Returns viaNodes, grown if needed.
+    private int[] answer(String line, Lookup lookup, ByteLineBuffer buffer, int[] viaNodes) {
+        String[] fields = line.split(",", -1);
+        boolean withPath = fields[0].equals("PATH");
+        if ((fields.length != 3) || (!withPath && !fields[0].equals("DIST"))) {
+            appendError(buffer, "expected PATH,origin,destination or DIST,origin,destination");
+            return viaNodes;
+        }
+        int fromIndex = ids.indexOf(fields[1]);
+        int toIndex = ids.indexOf(fields[2]);
+        if ((fromIndex < 0) || (toIndex < 0)) {
+            appendError(buffer, "unknown id " + ((fromIndex < 0) ? fields[1] : fields[2]));
+            return viaNodes;
+        }
+
+        PathCache.CachedPath cached = (pathCache != null) ? pathCache.get(fromIndex, toIndex) : null;
+        if (cached != null) {
+            if (cached.distance == Double.POSITIVE_INFINITY) {
+                appendNoPath(buffer, fromIndex, toIndex);
+            } else if (withPath) {
+                BestPathWriter.appendLine(buffer, idBytes, fromIndex, toIndex,
+                        cached.distance, cached.viaNodes, cached.viaNodes.length);
+            } else {
+                appendDistance(buffer, fromIndex, toIndex, cached.distance);
+            }
+            return viaNodes;
+        }
+
+        double distance = lookup.bestDistance(fromIndex, toIndex);
+        if (distance == Double.POSITIVE_INFINITY) {
+            if (pathCache != null) {
+                pathCache.put(fromIndex, toIndex, distance, viaNodes, 0);
+            }
+            appendNoPath(buffer, fromIndex, toIndex);
+            return viaNodes;
+        }
+        if (!withPath) {
+            appendDistance(buffer, fromIndex, toIndex, distance);
+            return viaNodes;
+        }
+
+        int viaCount = 0;
+        for (int via = lookup.previousNodeIndex(fromIndex, toIndex);
+             via != FloydWarshallOutput.nullNodeIndex;
+             via = lookup.previousNodeIndex(fromIndex, via)) {
+            if (viaCount == viaNodes.length) {
+                if (viaCount > idBytes.length) {
+                    appendError(buffer, "cycle in previous nodes");
+                    return viaNodes;
+                }
+                viaNodes = Arrays.copyOf(viaNodes, 2 * viaCount);
+            }
+            viaNodes[viaCount++] = via;
+        }
+        if (pathCache != null) {
+            pathCache.put(fromIndex, toIndex, distance, viaNodes, viaCount);
+        }
+        BestPathWriter.appendLine(buffer, idBytes, fromIndex, toIndex, distance, viaNodes, viaCount);
+        return viaNodes;
+    }
+
+    private void appendNoPath(ByteLineBuffer buffer, int fromIndex, int toIndex) {
+        buffer.append("NOPATH,".getBytes(StandardCharsets.UTF_8));
+        buffer.append(idBytes[fromIndex]);
+        buffer.append((byte) ',');
+        buffer.append(idBytes[toIndex]);
+        buffer.appendLineSeparator();
+    }
+
+    private void appendDistance(ByteLineBuffer buffer, int fromIndex, int toIndex, double distance) {
+        buffer.append(idBytes[fromIndex]);
+        buffer.append((byte) ',');
+        buffer.append(idBytes[toIndex]);
+        buffer.append((byte) ',');
+        buffer.appendFixed6(distance);
+        buffer.appendLineSeparator();
+    }
+
+    private static void appendError(ByteLineBuffer buffer, String message) {
+        buffer.append(("ERROR," + message).getBytes(StandardCharsets.UTF_8));
+        buffer.appendLineSeparator();
+    }
+
+    /**
+     * Best path lookups for one connection.
+     */
+    private interface Lookup {
+        double bestDistance(int i, int j);
+
+        int previousNodeIndex(int i, int j);
+    }
+
+    private class MatrixLookup implements Lookup {
+        @Override
+        public double bestDistance(int i, int j) {
+            return output.getBestDistance(i, j);
+        }
+
+        @Override
+        public int previousNodeIndex(int i, int j) {
+            return output.getPreviousNodeIndex(i, j);
+        }
+    }
+
+    // Searches the whole graph from each new origin, so consecutive queries from one origin share a search.
+    private class SearchLookup implements Lookup {
+        private final DijkstraSearch search = new DijkstraSearch(graph);
+        private final double[] bestDistances = new double[graph.size()];
+        private final int[] previousNodeIndex = new int[graph.size()];
+        private int origin = -1;
+
+        private void searchFrom(int i) {
+            if (i != origin) {
+                search.run(i, bestDistances, previousNodeIndex);
+                origin = i;
+            }
+        }
+
+        @Override
+        public double bestDistance(int i, int j) {
+            searchFrom(i);
+            return bestDistances[j];
+        }
+
+        @Override
+        public int previousNodeIndex(int i, int j) {
+            searchFrom(i);
+            return previousNodeIndex[j];
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.omgcodes;
+
+/**
+ * Receives progress of an all pairs run from its ProgressTracker, e.g. to log it or save it as metrics.
+ * Calls come from the thread driving the run, but runs (e.g. scenarios) may share a listener, so implementations
+ * that hold state must be thread safe.
+ */
+interface ProgressListener {
+    // Every so many intermediate nodes (or rows), and at least every ProgressTracker.maxReportIntervalMs.
+    void progress(ProgressSample sample);
+
+    // Once the last intermediate node (or row) is complete.
+    void finished(ProgressSample sample);
+
+    // Ignores progress, e.g. for tests and benchmarks, where reports would only add console output.
+    ProgressListener quiet = new ProgressListener() {
+        @Override
+        public void progress(ProgressSample sample) {
+        }
+
+        @Override
+        public void finished(ProgressSample sample) {
+        }
+    };
+
+    // Passes every call on to each of listeners, in order.
+    static ProgressListener all(ProgressListener... listeners) {
+        return new ProgressListener() {
+            @Override
+            public void progress(ProgressSample sample) {
+                for (ProgressListener listener : listeners) {
+                    listener.progress(sample);
+                }
+            }
+
+            @Override
+            public void finished(ProgressSample sample) {
+                for (ProgressListener listener : listeners) {
+                    listener.finished(sample);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.omgcodes;
+
+/**
+ * Snapshot of an all pairs run's progress. No logic beyond the derived rates.
+ * Counts are for this run, so exclude any intermediate nodes done before resuming from a checkpoint.
+ * Floyd Warshall engines count intermediate nodes. Engines that finish a row at a time count rows, or sources.
+ */
+class ProgressSample {
+    public final String engine;
+    // What completedNodes counts, e.g. "intermediate nodes".
+    public final String unit;
+    public final int size;
+    // Units [0, completedNodes) are done.
+    public final int completedNodes;
+    public final long elapsedMs;
+    // Cells relaxed through an intermediate node (size^2 per node), or cells of finished rows (size per row).
+    public final long relaxations;
+    // Cells whose best path got shorter, or -1 from engines that search rather than relax cells, so do not count them.
+    public final long improvements;
+    public final double cellsPerSecond;
+    // Estimated time to completion, from the rate so far. -1 until there is a rate.
+    public final long etaMs;
+
+    public ProgressSample(String engine, String unit, int size, int firstNode, int completedNodes, long cellsPerNode,
+                          long elapsedMs, long improvements) {
+        this.engine = engine;
+        this.unit = unit;
+        this.size = size;
+        this.completedNodes = completedNodes;
+        this.elapsedMs = elapsedMs;
+        this.relaxations = (completedNodes - firstNode) * cellsPerNode;
+        this.improvements = improvements;
+        this.cellsPerSecond = (elapsedMs > 0) ? 1000.0 * relaxations / elapsedMs : 0.0;
+        this.etaMs = (completedNodes > firstNode)
+                ? Math.round((double) elapsedMs * (size - completedNodes) / (completedNodes - firstNode))
+                : -1;
+    }
+}
@@ -0,0 +1,80 @@
+package com.omgcodes;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks an all pairs run for a ProgressListener. The engine calls completed() as intermediate nodes (or rows) finish,
+ * from the thread driving the run, and its tasks call addImprovements() from any thread, once per task.
+ * Reports every reportEvery intermediate nodes, as the progress logging always has, and also whenever
+ * maxReportIntervalMs passes, so very large graphs still report regularly.
+ */
+class ProgressTracker {
+    public static final int reportEvery = 100;
+    public static final long maxReportIntervalMs = 60000;
+
+    private final String engine;
+    private final String unit;
+    private final int size;
+    private final int firstNode;
+    private final long cellsPerNode;
+    private final ProgressListener listener;
+    private final long startTimeMs = System.currentTimeMillis();
+    private long lastReportMs = startTimeMs;
+    private int lastReportNode;
+
+    private final LongAdder improvements = new LongAdder();
+    // Set by engines with no improvement count, e.g. searches.
+    private volatile boolean improvementsUncounted;
+
+    // firstNode is where the run starts, e.g. after resuming from a checkpoint.
+    public ProgressTracker(String engine, int size, int firstNode, ProgressListener listener) {
+        this(engine, "intermediate nodes", size, firstNode, (long) size * size, listener);
+    }
+
+    // For engines that finish a row of size cells at a time, counted as unit, e.g. "sources".
+    public ProgressTracker(String engine, String unit, int size, ProgressListener listener) {
+        this(engine, unit, size, 0, size, listener);
+    }
+
+    private ProgressTracker(String engine, String unit, int size, int firstNode, long cellsPerNode,
+                            ProgressListener listener) {
+        this.engine = engine;
+        this.unit = unit;
+        this.size = size;
+        this.firstNode = firstNode;
+        this.cellsPerNode = cellsPerNode;
+        this.listener = listener;
+        this.lastReportNode = firstNode;
+    }
+
+    // Adds a count of improved cells returned by a kernel.
+    public void addImprovements(long count) {
+        improvements.add(count);
+    }
+
+    // For engines that do not relax cells, so have no improvements to count. Samples then report -1.
+    public void setImprovementsUncounted() {
+        improvementsUncounted = true;
+    }
+
+    // Intermediate nodes (or rows) [0, completedNodes) are done.
+    public void completed(int completedNodes) {
+        long nowMs = System.currentTimeMillis();
+        boolean due = (completedNodes / reportEvery != lastReportNode / reportEvery)
+                || (nowMs - lastReportMs >= maxReportIntervalMs);
+        if (due && (completedNodes < size)) {
+            lastReportMs = nowMs;
+            lastReportNode = completedNodes;
+            listener.progress(sample(completedNodes, nowMs));
+        }
+    }
+
+    public void finish() {
+        listener.finished(sample(size, System.currentTimeMillis()));
+    }
+
+    private ProgressSample sample(int completedNodes, long nowMs) {
+        return new ProgressSample(engine, unit, size, firstNode, completedNodes, cellsPerNode, nowMs - startTimeMs,
+                improvementsUncounted ? -1 : improvements.sum());
+    }
+}
@@ -0,0 +1,153 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+
+/**
+ * Distance and previous node matrices held row-major in a single array each, so element (i, j) is at i * size + j.
+ * Avoids the per-row pointer indirection of double[][], and keeps rows contiguous for the cache friendly kernels.
+ */
+class RowMajorMatrices implements MatrixStore {
+    // Largest size for which size * size still fits in an int array index.
+    public static final int maxSize = 46340;
+
+    public final int size;
+    public final double[] bestDistances;
+    public final int[] previousNodeIndex;
+
+    // Use relaxBranchFree() rather than the scalar kernel.
+    private boolean branchFree;
+
+    private RowMajorMatrices(int size) {
+        if (size > maxSize) {
+            throw new IllegalArgumentException(
+                    String.format("%,d nodes is too many for a row-major matrix (max %,d)", size, maxSize));
+        }
+        this.size = size;
+        this.bestDistances = new double[size * size];
+        this.previousNodeIndex = new int[size * size];
+    }
+
+    // +Inf / nullNodeIndex everywhere.
+    public static RowMajorMatrices empty(int size) {
+        RowMajorMatrices result = new RowMajorMatrices(size);
+        Arrays.fill(result.bestDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(result.previousNodeIndex, FloydWarshallOutput.nullNodeIndex);
+        return result;
+    }
+
+    // Seed with +Inf / nullNodeIndex everywhere, except direct arcs.
+    public static RowMajorMatrices seed(Graph graph) {
+        RowMajorMatrices result = empty(graph.size());
+        for (int i = 0; i < result.size; i++) {
+            for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                result.bestDistances[i * result.size + graph.targets[a]] = graph.weights[a];
+            }
+        }
+        return result;
+    }
+
+    // Copies both matrices into target, which must be the same size.
+    public void copyTo(RowMajorMatrices target) {
+        if (target.size != size) {
+            throw new IllegalArgumentException(
+                    String.format("Cannot copy a %,d node matrix to a %,d node one", size, target.size));
+        }
+        System.arraycopy(bestDistances, 0, target.bestDistances, 0, bestDistances.length);
+        System.arraycopy(previousNodeIndex, 0, target.previousNodeIndex, 0, previousNodeIndex.length);
+    }
+
+    public void setBranchFree(boolean branchFree) {
+        this.branchFree = branchFree;
+    }
+
+    // Relax rows [iStart, iEnd) x columns [jStart, jEnd) through intermediate nodes [kStart, kEnd), in k order.
+    // Returns the number of cells improved.
+    public long relax(int iStart, int iEnd, int jStart, int jEnd, int kStart, int kEnd) {
+        return branchFree
+                ? relaxBranchFree(iStart, iEnd, jStart, jEnd, kStart, kEnd)
+                : relaxScalar(iStart, iEnd, jStart, jEnd, kStart, kEnd);
+    }
+
+    private long relaxScalar(int iStart, int iEnd, int jStart, int jEnd, int kStart, int kEnd) {
+        long improvements = 0;
+        for (int k = kStart; k < kEnd; k++) {
+            final int kRow = k * size;
+            for (int i = iStart; i < iEnd; i++) {
+                final int iRow = i * size;
+                final double distIToK = bestDistances[iRow + k];
+                if (distIToK == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+
+                for (int j = jStart; j < jEnd; j++) {
+                    double distKToJ = bestDistances[kRow + j];
+                    if (distKToJ != Double.POSITIVE_INFINITY) {
+                        double distIToJViaK = distIToK + distKToJ;
+                        if (distIToJViaK < bestDistances[iRow + j]) {
+                            bestDistances[iRow + j] = distIToJViaK;
+                            int previousKToJ = previousNodeIndex[kRow + j];
+                            previousNodeIndex[iRow + j] =
+                                    (previousKToJ == FloydWarshallOutput.nullNodeIndex) ? k : previousKToJ;
+                            improvements++;
+                        }
+                    }
+                }
+            }
+        }
+        return improvements;
+    }
+
+    // As relaxScalar(), with no branches in the j loop, so the JIT can compile it to SIMD compare and blend.
+    // Skipping +Inf distances from k is not needed: distIToK + Inf is +Inf, which never compares less.
+    // So every cell ends up exactly as with the scalar kernel. Improvements are counted by adding better as 0 or 1.
+    private long relaxBranchFree(int iStart, int iEnd, int jStart, int jEnd, int kStart, int kEnd) {
+        final double[] distances = bestDistances;
+        final int[] previous = previousNodeIndex;
+        long improvements = 0;
+        for (int k = kStart; k < kEnd; k++) {
+            final int kRow = k * size;
+            for (int i = iStart; i < iEnd; i++) {
+                final int iRow = i * size;
+                final double distIToK = distances[iRow + k];
+                if (distIToK == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+
+                int rowImprovements = 0;
+                for (int j = jStart; j < jEnd; j++) {
+                    final double distIToJ = distances[iRow + j];
+                    final double distIToJViaK = distIToK + distances[kRow + j];
+                    final boolean better = distIToJViaK < distIToJ;
+                    final int previousKToJ = previous[kRow + j];
+                    final int previousViaK = (previousKToJ == FloydWarshallOutput.nullNodeIndex) ? k : previousKToJ;
+                    distances[iRow + j] = better ? distIToJViaK : distIToJ;
+                    previous[iRow + j] = better ? previousViaK : previous[iRow + j];
+                    rowImprovements += better ? 1 : 0;
+                }
+                improvements += rowImprovements;
+            }
+        }
+        return improvements;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public double getBestDistance(int i, int j) {
+        return bestDistances[i * size + j];
+    }
+
+    @Override
+    public int getPreviousNodeIndex(int i, int j) {
+        return previousNodeIndex[i * size + j];
+    }
+
+    @Override
+    public void set(int i, int j, double bestDistance, int previousNodeIndex) {
+        this.bestDistances[i * size + j] = bestDistance;
+        this.previousNodeIndex[i * size + j] = previousNodeIndex;
+    }
+}
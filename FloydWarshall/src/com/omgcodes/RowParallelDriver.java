@@ -0,0 +1,66 @@
+package com.omgcodes;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * One intermediate node k of row parallel Floyd Warshall, shared by the engines whatever their matrix layout.
+ * For a given k, row i only reads row i and row k, so once row k is relaxed (on the calling thread, as it only
+ * changes with negative cycles) every other row can be relaxed independently, in fork-join tasks. The join is the
+ * barrier before k + 1. Every cell sees the same comparisons in the same order as the serial engine.
+ */
+class RowParallelDriver {
+    // Rows per fork-join leaf task.
+    private static final int rowsPerTask = 16;
+
+    // An engine's kernel: relaxes rows [start, end) through intermediate node k, and returns the number of cells
+    // improved. Called from any worker thread, with disjoint row ranges.
+    interface RowRelax {
+        long relaxRows(int start, int end, int k);
+    }
+
+    private RowParallelDriver() {
+    }
+
+    // Relaxes rows [0, size) through intermediate node k, on pool. tracker may be null.
+    static void relaxThrough(int size, int k, RowRelax rows, ForkJoinPool pool, ProgressTracker tracker) {
+        addImprovements(tracker, rows.relaxRows(k, k + 1, k));
+        pool.invoke(new RowRange(rows, 0, k, k, tracker));
+        pool.invoke(new RowRange(rows, k + 1, size, k, tracker));
+    }
+
+    private static void addImprovements(ProgressTracker tracker, long improvements) {
+        if (tracker != null) {
+            tracker.addImprovements(improvements);
+        }
+    }
+
+    private static class RowRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RowRelax rows;
+        private final int start;
+        private final int end;
+        private final int k;
+        private final ProgressTracker tracker;
+
+        RowRange(RowRelax rows, int start, int end, int k, ProgressTracker tracker) {
+            this.rows = rows;
+            this.start = start;
+            this.end = end;
+            this.k = k;
+            this.tracker = tracker;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= rowsPerTask) {
+                addImprovements(tracker, rows.relaxRows(start, end, k));
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new RowRange(rows, start, middle, k, tracker),
+                        new RowRange(rows, middle, end, k, tracker));
+            }
+        }
+    }
+}
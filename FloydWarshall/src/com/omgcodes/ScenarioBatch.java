@@ -0,0 +1,136 @@
+package com.omgcodes;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs every scenario of a ScenarioWeights in one process, so the ids, arcs and OD pairs are only loaded once.
+ * Up to parallelScenarios scenarios run at once, each with an equal share of the threads, and each holding its own
+ * all pairs result until saved, so memory grows with parallelScenarios.
+ * Saves a file per scenario, named as the output path with the scenario name before its extension
+ * (paths.csv -> paths.am.csv), or with scenarioColumn, one csv file with the scenario name as an extra first column,
+ * in scenario order.
+ */
+class ScenarioBatch {
+    // Calculates all pairs for one scenario's graph.
+    interface Engine {
+        FloydWarshallOutput run(Graph graph, int threads) throws IOException;
+    }
+
+    private final ScenarioWeights weights;
+    private final Engine engine;
+    private final int parallelScenarios;
+    private final int threadsPerScenario;
+
+    public ScenarioBatch(ScenarioWeights weights, Engine engine, int threads, int parallelScenarios) {
+        ThreadCount.check(threads);
+        if (parallelScenarios < 1) {
+            throw new IllegalArgumentException("Parallel scenario count must be positive: " + parallelScenarios);
+        }
+        this.weights = weights;
+        this.engine = engine;
+        this.parallelScenarios = Math.min(parallelScenarios, weights.count());
+        this.threadsPerScenario = Math.max(1, threads / this.parallelScenarios);
+    }
+
+    public void run(OdPairs pathsToSave, File outputPath, String format, boolean scenarioColumn) throws IOException {
+        if (scenarioColumn && !format.equals("csv")) {
+            throw new IllegalArgumentException("A scenario column is only written in csv output");
+        }
+        long startTimeMs = System.currentTimeMillis();
+        System.out.printf("Running %,d scenarios, %d at a time with %d thread(s) each\n",
+                weights.count(), parallelScenarios, threadsPerScenario);
+
+        // With a scenario column, each scenario is written to a part file, then the parts are joined in order.
+        final File[] files = new File[weights.count()];
+        for (int s = 0; s < files.length; s++) {
+            files[s] = scenarioColumn
+                    ? new File(outputPath.getPath() + "." + weights.names[s] + ".part")
+                    : scenarioPath(outputPath, weights.names[s]);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelScenarios);
+        try {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (int s = 0; s < files.length; s++) {
+                final int scenario = s;
+                results.add(pool.submit(
+                        () -> runScenario(scenario, pathsToSave, files[scenario], format, scenarioColumn)));
+            }
+            for (int s = 0; s < files.length; s++) {
+                long countLinesWritten = results.get(s).get();
+                long progressMs = System.currentTimeMillis() - startTimeMs;
+                System.out.printf("%,8d[ms] : Scenario %s wrote %,d output records to %s\n",
+                        progressMs, weights.names[s], countLinesWritten, files[s].getAbsolutePath());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted running scenarios", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed running scenarios", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (scenarioColumn) {
+            join(files, outputPath);
+        }
+
+        long takenMs = System.currentTimeMillis() - startTimeMs;
+        System.out.printf("Took %,d[ms] to run %,d scenarios\n", takenMs, weights.count());
+    }
+
+    private long runScenario(int scenario, OdPairs pathsToSave, File file, String format, boolean scenarioColumn)
+            throws IOException {
+        FloydWarshallOutput output = engine.run(weights.scenarioGraph(scenario), threadsPerScenario);
+        if (format.equals("binary")) {
+            return new BinaryResultWriter(output, threadsPerScenario).write(pathsToSave, file);
+        }
+        BestPathWriter writer = new BestPathWriter(output, threadsPerScenario);
+        if (scenarioColumn) {
+            writer.setLinePrefix(weights.names[scenario] + ",");
+        }
+        return writer.write(pathsToSave, file);
+    }
+
+    // outputPath with name inserted before its extension, if it has one.
+    static File scenarioPath(File outputPath, String name) {
+        String fileName = outputPath.getName();
+        int dot = fileName.lastIndexOf('.');
+        String scenarioName = (dot > 0)
+                ? fileName.substring(0, dot) + "." + name + fileName.substring(dot)
+                : fileName + "." + name;
+        return new File(outputPath.getParentFile(), scenarioName);
+    }
+
+    // Concatenates parts into outputPath, deleting each part once copied.
+    private static void join(File[] parts, File outputPath) throws IOException {
+        try (FileOutputStream stream = new FileOutputStream(outputPath)) {
+            FileChannel target = stream.getChannel();
+            for (File part : parts) {
+                try (FileInputStream input = new FileInputStream(part)) {
+                    FileChannel source = input.getChannel();
+                    long size = source.size();
+                    for (long position = 0; position < size; ) {
+                        position += source.transferTo(position, size - position, target);
+                    }
+                }
+                if (!part.delete()) {
+                    throw new IOException("Could not delete " + part.getAbsolutePath());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.omgcodes;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Alternative arc lengths for one graph, one scenario per column, e.g. travel times by time of day.
+ * File layout: a header line "origin,destination,name1,name2,..." naming the scenarios, then a line per arc
+ * "origin,destination,length1,length2,...". Arcs of the graph with no line keep their graph length in every scenario.
+ * Where the graph has duplicate arcs, the last one is used, as everywhere else, so that is the one given the lengths.
+ */
+class ScenarioWeights {
+    // Scenario names appear in output file names, so are kept to safe characters.
+    private static final String namePattern = "[A-Za-z0-9_.-]+";
+
+    private final Graph graph;
+    public final String[] names;
+    // lengths[s][a] is the length of arc a in scenario s.
+    private final double[][] lengths;
+
+    private ScenarioWeights(Graph graph, String[] names, double[][] lengths) {
+        this.graph = graph;
+        this.names = names;
+        this.lengths = lengths;
+    }
+
+    public static ScenarioWeights load(File source, Graph graph) throws IOException {
+        System.out.printf("Loading scenario weights from %s\n", source.getAbsolutePath());
+
+        String[] names;
+        double[][] lengths;
+        int count = 0;
+        try (MappedCsvReader rd = new MappedCsvReader(source, Charset.defaultCharset())) {
+            if (!rd.nextRecord() || (rd.fieldCount() < 3)) {
+                throw new IllegalArgumentException(String.format(
+                        "%s: expected a header of origin, destination and at least one scenario name",
+                        source.getAbsolutePath()));
+            }
+            names = new String[rd.fieldCount() - 2];
+            Set<String> seen = new HashSet<String>();
+            for (int s = 0; s < names.length; s++) {
+                names[s] = rd.getString(s + 2);
+                if (!names[s].matches(namePattern)) {
+                    throw new IllegalArgumentException(String.format(
+                            "Scenario name \"%s\" must only use letters, digits, '_', '.' and '-'", names[s]));
+                }
+                if (!seen.add(names[s])) {
+                    throw new IllegalArgumentException("Duplicate scenario name: " + names[s]);
+                }
+            }
+
+            lengths = new double[names.length][];
+            for (int s = 0; s < names.length; s++) {
+                lengths[s] = graph.weights.clone();
+            }
+
+            while (rd.nextRecord()) {
+                int originIndex = rd.lookup(0, graph.getIds());
+                int destinationIndex = rd.lookup(1, graph.getIds());
+                int a = ((originIndex >= 0) && (destinationIndex >= 0))
+                        ? graph.findArc(originIndex, destinationIndex)
+                        : -1;
+                if (a < 0) {
+                    throw new IllegalArgumentException(String.format(
+                            "%s line %,d: arc %s -> %s is not in the graph",
+                            source.getAbsolutePath(), rd.getLineNumber(), rd.getString(0), rd.getString(1)));
+                }
+                for (int s = 0; s < names.length; s++) {
+                    lengths[s][a] = rd.getDouble(s + 2);
+                }
+                count++;
+            }
+        }
+        System.out.printf("%,d scenarios, lengths for %,d of %,d arcs\n", names.length, count, graph.arcCount());
+
+        return new ScenarioWeights(graph, names, lengths);
+    }
+
+    public int count() {
+        return names.length;
+    }
+
+    // The graph with scenario s's lengths.
+    public Graph scenarioGraph(int s) {
+        return graph.withLengths(lengths[s]);
+    }
+}
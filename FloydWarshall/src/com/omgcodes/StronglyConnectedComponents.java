@@ -0,0 +1,110 @@
+package com.omgcodes;
+
+import java.util.Arrays;
+
+/**
+ * Strongly connected components of a Graph, by Tarjan's algorithm with an explicit stack, so deep graphs
+ * cannot overflow the thread stack.
+ * Components are numbered in the order Tarjan completes them, which is a reverse topological order of the
+ * condensation: every arc between two different components goes from a higher to a lower numbered component.
+ */
+class StronglyConnectedComponents {
+    private static final int unvisited = -1;
+
+    public final int count;
+    // Component of each node.
+    public final int[] componentOf;
+    // Nodes of component c are members[memberOffsets[c] .. memberOffsets[c + 1]).
+    public final int[] memberOffsets;
+    public final int[] members;
+
+    private StronglyConnectedComponents(int count, int[] componentOf, int[] memberOffsets, int[] members) {
+        this.count = count;
+        this.componentOf = componentOf;
+        this.memberOffsets = memberOffsets;
+        this.members = members;
+    }
+
+    public int size(int component) {
+        return memberOffsets[component + 1] - memberOffsets[component];
+    }
+
+    public static StronglyConnectedComponents find(Graph graph) {
+        final int size = graph.size();
+        final int[] offsets = graph.offsets;
+        final int[] targets = graph.targets;
+
+        int[] visitIndex = new int[size];
+        int[] lowLink = new int[size];
+        Arrays.fill(visitIndex, unvisited);
+        boolean[] onStack = new boolean[size];
+        // Tarjan's stack of visited nodes not yet assigned a component. Popped components land in members.
+        int[] stack = new int[size];
+        int stackSize = 0;
+        // Depth first search call stack: node, and its next arc to follow.
+        int[] callNodes = new int[size];
+        int[] callArcs = new int[size];
+        int callDepth = 0;
+
+        int[] componentOf = new int[size];
+        int[] memberOffsets = new int[size + 1];
+        int[] members = new int[size];
+        int memberCount = 0;
+        int count = 0;
+        int nextVisitIndex = 0;
+
+        for (int root = 0; root < size; root++) {
+            if (visitIndex[root] != unvisited) {
+                continue;
+            }
+            visitIndex[root] = lowLink[root] = nextVisitIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callNodes[callDepth] = root;
+            callArcs[callDepth] = offsets[root];
+            callDepth++;
+
+            while (callDepth > 0) {
+                final int node = callNodes[callDepth - 1];
+                final int arc = callArcs[callDepth - 1];
+                if (arc < offsets[node + 1]) {
+                    callArcs[callDepth - 1]++;
+                    int target = targets[arc];
+                    if (visitIndex[target] == unvisited) {
+                        visitIndex[target] = lowLink[target] = nextVisitIndex++;
+                        stack[stackSize++] = target;
+                        onStack[target] = true;
+                        callNodes[callDepth] = target;
+                        callArcs[callDepth] = offsets[target];
+                        callDepth++;
+                    } else if (onStack[target]) {
+                        lowLink[node] = Math.min(lowLink[node], visitIndex[target]);
+                    }
+                    continue;
+                }
+
+                // All arcs followed: return from node.
+                callDepth--;
+                if (lowLink[node] == visitIndex[node]) {
+                    memberOffsets[count] = memberCount;
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        componentOf[member] = count;
+                        members[memberCount++] = member;
+                    } while (member != node);
+                    count++;
+                }
+                if (callDepth > 0) {
+                    int parent = callNodes[callDepth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                }
+            }
+        }
+        memberOffsets[count] = memberCount;
+
+        return new StronglyConnectedComponents(
+                count, componentOf, Arrays.copyOf(memberOffsets, count + 1), members);
+    }
+}
@@ -0,0 +1,17 @@
+package com.omgcodes;
+
+/**
+ * Checks thread counts given to the engines and writers.
+ */
+class ThreadCount {
+    private ThreadCount() {
+    }
+
+    // Returns threads, or throws IllegalArgumentException if it is not positive.
+    static int check(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        return threads;
+    }
+}
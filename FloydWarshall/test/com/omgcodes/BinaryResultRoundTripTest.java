@@ -0,0 +1,118 @@
+package com.omgcodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Writes results with BinaryResultWriter and reads them back through BinaryResultReader.
+ */
+public class BinaryResultRoundTripTest {
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("fw-binary-result", ".bin");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testSmallResult() throws IOException {
+        // A -> B -> C is shorter than A -> C. Nothing reaches D.
+        IdTable ids = new IdTable(StandardCharsets.UTF_8);
+        int a = ids.intern("A");
+        int b = ids.intern("B");
+        int c = ids.intern("C");
+        int d = ids.intern("D");
+        ArcList arcs = new ArcList(3);
+        arcs.add(a, b, 1.0);
+        arcs.add(b, c, 2.0);
+        arcs.add(a, c, 5.0);
+        Graph graph = Graph.build(ids, arcs);
+        FloydWarshallOutput output = graph.floydWarshall(ProgressListener.quiet);
+
+        OdPairs pairs = new OdPairs(5, new int[]{a, a, a, c, b}, new int[]{b, c, d, a, c});
+        long countWithPath = new BinaryResultWriter(output, 2).write(pairs, file);
+        assertEquals(3, countWithPath);
+
+        try (BinaryResultReader reader = new BinaryResultReader(file)) {
+            assertEquals(4, reader.getIdCount());
+            assertEquals(5, reader.getRecordCount());
+            assertEquals("D", reader.getId(d));
+
+            // Middle record first: the pair with no path.
+            assertEquals(a, reader.getOriginIndex(2));
+            assertEquals(d, reader.getDestinationIndex(2));
+            assertEquals(Double.POSITIVE_INFINITY, reader.getDistance(2), 0.0);
+            assertArrayEquals(new int[0], reader.getViaNodeIndices(2));
+
+            assertEquals(3.0, reader.getDistance(1), 0.0);
+            assertArrayEquals(new String[]{"B"}, reader.getViaNodeIds(1));
+
+            assertEquals(1.0, reader.getDistance(0), 0.0);
+            assertArrayEquals(new int[0], reader.getViaNodeIndices(0));
+            assertEquals(Double.POSITIVE_INFINITY, reader.getDistance(3), 0.0);
+            assertEquals(2.0, reader.getDistance(4), 0.0);
+        }
+    }
+
+    @Test
+    public void testRandomAccessAcrossChunks() throws IOException {
+        // Every ordered pair of 200 nodes is more than two of the writer's chunks.
+        Graph graph = TestGraphs.random(200, 700, 8803, false);
+        FloydWarshallOutput output = graph.floydWarshall(ProgressListener.quiet);
+        OdPairs pairs = TestGraphs.allPairs(graph);
+        int count = pairs.count;
+        new BinaryResultWriter(output, 3).write(pairs, file);
+
+        List<Integer> records = new ArrayList<Integer>();
+        for (int r = 0; r < count; r++) {
+            records.add(r);
+        }
+        Collections.shuffle(records, new Random(41));
+        try (BinaryResultReader reader = new BinaryResultReader(file)) {
+            assertEquals(count, reader.getRecordCount());
+            for (int r : records) {
+                int i = reader.getOriginIndex(r);
+                int j = reader.getDestinationIndex(r);
+                assertEquals(pairs.originIndex[r], i);
+                assertEquals(pairs.destinationIndex[r], j);
+                assertEquals(output.getBestDistance(i, j), reader.getDistance(r), 0.0);
+                assertArrayEquals(viaNodes(output, i, j), reader.getViaNodeIndices(r));
+            }
+        }
+    }
+
+    // Via nodes in path order, from previous node indices.
+    private static int[] viaNodes(FloydWarshallOutput output, int i, int j) {
+        if (output.getBestDistance(i, j) == Double.POSITIVE_INFINITY) {
+            return new int[0];
+        }
+        List<Integer> reversed = new ArrayList<Integer>();
+        for (int via = output.getPreviousNodeIndex(i, j);
+             via != FloydWarshallOutput.nullNodeIndex;
+             via = output.getPreviousNodeIndex(i, via)) {
+            reversed.add(via);
+        }
+        int[] result = new int[reversed.size()];
+        for (int v = 0; v < result.length; v++) {
+            result[v] = reversed.get(result.length - 1 - v);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,61 @@
+package com.omgcodes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Differential tests of the blocked engine against Graph.floydWarshall(), the serial reference.
+ * Only distances are compared: which of several equally short paths is kept depends on the block size.
+ */
+public class BlockedFloydWarshallTest {
+    private static final int[] blockSizes = {1, 7, 16, 64, 200};
+
+    @Test
+    public void testWholeNumberDistancesMatchSerial() {
+        // Whole number sums are exact in any order, so distances must be identical.
+        Graph graph = TestGraphs.random(150, 600, 3117, true);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+
+        for (int blockSize : blockSizes) {
+            for (int threads = 1; threads <= 3; threads += 2) {
+                FloydWarshallOutput blocked = runBlocked(graph, blockSize, threads, false);
+                assertDistancesMatch(graph, serial, blocked, 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testDistancesMatchSerial() {
+        Graph graph = TestGraphs.random(130, 500, 5527, false);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+
+        for (int blockSize : blockSizes) {
+            assertDistancesMatch(graph, serial, runBlocked(graph, blockSize, 2, false), 1e-9);
+            assertDistancesMatch(graph, serial, runBlocked(graph, blockSize, 1, true), 1e-9);
+        }
+    }
+
+    private static FloydWarshallOutput runBlocked(Graph graph, int blockSize, int threads, boolean branchFree) {
+        BlockedFloydWarshall engine = new BlockedFloydWarshall(graph, blockSize, threads, branchFree);
+        engine.setProgressListener(ProgressListener.quiet);
+        return engine.run();
+    }
+
+    // Equal distances, to within relative tolerance, and every blocked path is a real path of that length.
+    private static void assertDistancesMatch(Graph graph, FloydWarshallOutput expected, FloydWarshallOutput actual,
+                                             double tolerance) {
+        for (int i = 0; i < graph.size(); i++) {
+            for (int j = 0; j < graph.size(); j++) {
+                double expectedDistance = expected.getBestDistance(i, j);
+                double actualDistance = actual.getBestDistance(i, j);
+                if (expectedDistance == Double.POSITIVE_INFINITY) {
+                    assertEquals(expectedDistance, actualDistance, 0.0);
+                } else {
+                    assertEquals(expectedDistance, actualDistance, tolerance * expectedDistance);
+                }
+                TestGraphs.assertPathMatchesDistance(graph, actual, i, j);
+            }
+        }
+    }
+}
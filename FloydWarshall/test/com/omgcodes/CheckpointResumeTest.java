@@ -0,0 +1,98 @@
+package com.omgcodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checkpoints written part way through a run, and runs resumed from them, which must finish identical to an
+ * uninterrupted Graph.floydWarshall().
+ */
+public class CheckpointResumeTest {
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("fw-checkpoint", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Graph graph = TestGraphs.random(90, 300, 1553, false);
+        RowMajorMatrices matrices = partRun(graph, 40);
+        FloydWarshallCheckpoint.save(file, matrices, graph.fingerprint(), 40);
+
+        FloydWarshallCheckpoint checkpoint = FloydWarshallCheckpoint.load(file, graph.size(), graph.fingerprint());
+        assertNotNull(checkpoint);
+        assertEquals(40, checkpoint.nextK);
+        assertEquals(matrices.size, checkpoint.matrices.size);
+        for (int c = 0; c < matrices.bestDistances.length; c++) {
+            assertEquals(Double.doubleToLongBits(matrices.bestDistances[c]),
+                    Double.doubleToLongBits(checkpoint.matrices.bestDistances[c]));
+        }
+        assertArrayEquals(matrices.previousNodeIndex, checkpoint.matrices.previousNodeIndex);
+
+        // Not for another graph, or another size.
+        assertNull(FloydWarshallCheckpoint.load(file, graph.size(), graph.fingerprint() + 1));
+        assertNull(FloydWarshallCheckpoint.load(file, graph.size() + 1, graph.fingerprint()));
+    }
+
+    @Test
+    public void testResumeIsIdenticalToSerial() throws IOException {
+        Graph graph = TestGraphs.random(160, 600, 2621, true);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+
+        // As if killed after the checkpoint from intermediate nodes 0 .. 62.
+        FloydWarshallCheckpoint.save(file, partRun(graph, 63), graph.fingerprint(), 63);
+        ParallelFloydWarshall engine = new ParallelFloydWarshall(graph, 3, false);
+        engine.setProgressListener(ProgressListener.quiet);
+        engine.setCheckpoint(file, 1000, Long.MAX_VALUE, true);
+        TestGraphs.assertIdentical(graph, serial, engine.run());
+        // Deleted once the run completes.
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void testCheckpointingRunIsIdenticalToSerial() throws IOException {
+        // Checkpoints every 7 nodes, and a checkpoint for a different graph that must not be resumed from.
+        Graph graph = TestGraphs.random(120, 400, 71, true);
+        Graph other = TestGraphs.random(120, 400, 72, true);
+        FloydWarshallCheckpoint.save(file, partRun(other, 50), other.fingerprint(), 50);
+
+        ParallelFloydWarshall engine = new ParallelFloydWarshall(graph, 2, true);
+        engine.setProgressListener(ProgressListener.quiet);
+        engine.setCheckpoint(file, 7, Long.MAX_VALUE, true);
+        TestGraphs.assertIdentical(graph, graph.floydWarshall(ProgressListener.quiet), engine.run());
+        assertFalse(file.exists());
+    }
+
+    // The matrices after intermediate nodes 0 .. nextK - 1.
+    private static RowMajorMatrices partRun(Graph graph, int nextK) {
+        RowMajorMatrices matrices = RowMajorMatrices.seed(graph);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (int k = 0; k < nextK; k++) {
+                ParallelFloydWarshall.relaxThrough(matrices, k, pool, null);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return matrices;
+    }
+}
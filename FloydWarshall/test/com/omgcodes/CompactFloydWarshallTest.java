@@ -0,0 +1,55 @@
+package com.omgcodes;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The compact engine against Graph.floydWarshall(), within the float error bound documented on CompactMatrices.
+ */
+public class CompactFloydWarshallTest {
+    @Test
+    public void testWithinErrorBound() {
+        Graph graph = TestGraphs.random(150, 450, 5303, false);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+        CompactFloydWarshall engine = new CompactFloydWarshall(graph, 3);
+        engine.setProgressListener(ProgressListener.quiet);
+        FloydWarshallOutput compact = engine.run();
+
+        for (int i = 0; i < graph.size(); i++) {
+            for (int j = 0; j < graph.size(); j++) {
+                double expected = serial.getBestDistance(i, j);
+                // At most size arcs per path, so at most 2 * size roundings of 2^-24 each.
+                assertEquals(i + " to " + j, expected, compact.getBestDistance(i, j),
+                        2 * graph.size() * Math.scalb(expected, -24));
+            }
+        }
+    }
+
+    @Test
+    public void testIntegralIsExact() {
+        // Whole number lengths with small totals are exact in float, so this must match serial exactly.
+        Graph graph = TestGraphs.random(120, 400, 719, true);
+        CompactFloydWarshall engine = new CompactFloydWarshall(graph, 2);
+        engine.setProgressListener(ProgressListener.quiet);
+        TestGraphs.assertIdentical(graph, graph.floydWarshall(ProgressListener.quiet), engine.run());
+    }
+
+    @Test
+    public void testRejectsNegativeLength() {
+        IdTable ids = new IdTable(StandardCharsets.UTF_8);
+        ArcList arcs = new ArcList(2);
+        arcs.add(ids.intern("A"), ids.intern("B"), 2.0);
+        arcs.add(ids.intern("B"), ids.intern("C"), -1.0);
+        try {
+            new CompactFloydWarshall(Graph.build(ids, arcs), 1).run();
+            fail("Negative length accepted");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Compact needs non-negative lengths: B -> C is"));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.omgcodes;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Strongly connected components against reachability, and differential tests of the condensed engine against
+ * Graph.floydWarshall().
+ */
+public class CondensedFloydWarshallTest {
+    @Test
+    public void testComponentsMatchReachability() {
+        Graph graph = clustered(new int[]{60, 30, 30, 8, 1, 1, 12}, 3, 17);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+        StronglyConnectedComponents components = StronglyConnectedComponents.find(graph);
+
+        int members = 0;
+        for (int c = 0; c < components.count; c++) {
+            members += components.size(c);
+            for (int m = components.memberOffsets[c]; m < components.memberOffsets[c + 1]; m++) {
+                assertEquals(c, components.componentOf[components.members[m]]);
+            }
+        }
+        assertEquals(graph.size(), members);
+
+        for (int u = 0; u < graph.size(); u++) {
+            for (int v = 0; v < graph.size(); v++) {
+                boolean strongly = (u == v) || ((serial.getBestDistance(u, v) != Double.POSITIVE_INFINITY)
+                        && (serial.getBestDistance(v, u) != Double.POSITIVE_INFINITY));
+                assertEquals(u + " and " + v, strongly, components.componentOf[u] == components.componentOf[v]);
+            }
+            // Reverse topological numbering: arcs leaving a component go to a lower numbered one.
+            for (int a = graph.offsets[u]; a < graph.offsets[u + 1]; a++) {
+                assertTrue(components.componentOf[graph.targets[a]] <= components.componentOf[u]);
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesSerial() {
+        // The 300 node component is big enough to run its own Floyd Warshall row parallel.
+        Graph graph = clustered(new int[]{300, 40, 40, 5, 1, 1, 20, 60, 2}, 3, 2719);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+        for (int threads = 1; threads <= 3; threads += 2) {
+            CondensedFloydWarshall engine = new CondensedFloydWarshall(graph, threads);
+            engine.setProgressListener(ProgressListener.quiet);
+            TestGraphs.assertEquivalent(graph, serial, engine.run());
+        }
+    }
+
+    @Test
+    public void testSingleComponent() {
+        Graph graph = clustered(new int[]{80}, 4, 3);
+        assertEquals(1, StronglyConnectedComponents.find(graph).count);
+        CondensedFloydWarshall engine = new CondensedFloydWarshall(graph, 2);
+        engine.setProgressListener(ProgressListener.quiet);
+        // Nodes are renumbered within the component, so where paths tie another may be kept.
+        TestGraphs.assertEquivalent(graph, graph.floydWarshall(ProgressListener.quiet), engine.run());
+    }
+
+    // Clusters made strongly connected by a ring plus random arcs, with whole number lengths so many paths tie,
+    // joined by one way arcs from earlier to later clusters. Nodes are shuffled, so clusters are not contiguous.
+    private static Graph clustered(int[] clusterSizes, int arcsPerNode, long seed) {
+        Random rand = new Random(seed);
+        List<Integer> order = new ArrayList<Integer>();
+        for (int c = 0; c < clusterSizes.length; c++) {
+            for (int m = 0; m < clusterSizes[c]; m++) {
+                order.add(order.size());
+            }
+        }
+        Collections.shuffle(order, rand);
+        IdTable ids = new IdTable(StandardCharsets.UTF_8);
+        for (int i = 0; i < order.size(); i++) {
+            ids.intern("N" + i);
+        }
+
+        ArcList arcs = new ArcList(arcsPerNode * order.size());
+        int start = 0;
+        for (int c = 0; c < clusterSizes.length; c++) {
+            int size = clusterSizes[c];
+            for (int m = 0; m < size; m++) {
+                arcs.add(order.get(start + m), order.get(start + (m + 1) % size), 1 + rand.nextInt(5));
+                for (int a = 1; a < arcsPerNode; a++) {
+                    arcs.add(order.get(start + m), order.get(start + rand.nextInt(size)), 1 + rand.nextInt(5));
+                }
+            }
+            int laterNodes = order.size() - start - size;
+            for (int a = 0; (a < 3) && (laterNodes > 0); a++) {
+                arcs.add(order.get(start + rand.nextInt(size)), order.get(start + size + rand.nextInt(laterNodes)),
+                        1 + rand.nextInt(5));
+            }
+            start += size;
+        }
+        return Graph.build(ids, arcs);
+    }
+}
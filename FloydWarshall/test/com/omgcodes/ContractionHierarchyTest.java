@@ -0,0 +1,100 @@
+package com.omgcodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Differential tests of contraction hierarchy queries against Graph.floydWarshall(), including a node to itself,
+ * which gives the shortest cycle back to it, and unpacking shortcuts back to original arcs.
+ */
+public class ContractionHierarchyTest {
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("fw-hierarchy", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testMatchesSerial() {
+        checkAgainstSerial(TestGraphs.random(150, 450, 6007, false));
+    }
+
+    @Test
+    public void testMatchesSerialWithTies() {
+        checkAgainstSerial(TestGraphs.random(130, 400, 313, true));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Graph graph = TestGraphs.random(100, 300, 4409, false);
+        ContractionHierarchy built = ContractionHierarchy.openOrBuild(graph, file);
+        assertTrue(file.isFile());
+        ContractionHierarchy loaded = ContractionHierarchy.openOrBuild(graph, file);
+        assertEquals(built.shortcutCount(), loaded.shortcutCount());
+
+        ContractionHierarchyQuery builtQuery = new ContractionHierarchyQuery(built);
+        ContractionHierarchyQuery loadedQuery = new ContractionHierarchyQuery(loaded);
+        for (int i = 0; i < graph.size(); i++) {
+            for (int j = 0; j < graph.size(); j++) {
+                assertEquals(Double.doubleToLongBits(builtQuery.search(i, j)),
+                        Double.doubleToLongBits(loadedQuery.search(i, j)));
+            }
+        }
+
+        // A hierarchy saved for one graph is not loaded for another.
+        assertNotNull(ContractionHierarchy.load(file, graph));
+        assertNull(ContractionHierarchy.load(file, TestGraphs.random(100, 300, 4410, false)));
+    }
+
+    private static void checkAgainstSerial(Graph graph) {
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        assertTrue(hierarchy.shortcutCount() > 0);
+
+        // One query reused for every pair, as Main does per thread.
+        ContractionHierarchyQuery query = new ContractionHierarchyQuery(hierarchy);
+        int cycles = 0;
+        for (int i = 0; i < graph.size(); i++) {
+            for (int j = 0; j < graph.size(); j++) {
+                double expected = serial.getBestDistance(i, j);
+                double distance = query.search(i, j);
+                assertEquals(i + " to " + j, expected, distance, 1e-9 * expected);
+                if (distance == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                if (i == j) {
+                    cycles++;
+                }
+
+                // Via nodes are in reverse path order. With the ends, they must join up by original arcs.
+                int viaCount = query.unpackViaNodes();
+                int[] viaNodes = query.getViaNodes();
+                double length = 0;
+                int node = i;
+                for (int v = viaCount - 1; v >= 0; v--) {
+                    length += TestGraphs.arcLength(graph, node, viaNodes[v]);
+                    node = viaNodes[v];
+                }
+                length += TestGraphs.arcLength(graph, node, j);
+                assertEquals(i + " to " + j, distance, length, 1e-9 * distance);
+            }
+        }
+        assertTrue("Cycles " + cycles, cycles > 0);
+    }
+}
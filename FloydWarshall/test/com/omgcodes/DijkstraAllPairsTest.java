@@ -0,0 +1,28 @@
+package com.omgcodes;
+
+import org.junit.Test;
+
+/**
+ * Differential tests of per-source Dijkstra against Graph.floydWarshall(). Distances agree up to rounding;
+ * where paths tie a different one may be kept, so paths are checked against the graph's arcs instead.
+ */
+public class DijkstraAllPairsTest {
+    @Test
+    public void testMatchesSerial() {
+        checkAgainstSerial(TestGraphs.random(180, 540, 5527, false), 3);
+    }
+
+    @Test
+    public void testMatchesSerialWithTies() {
+        for (int threads = 1; threads <= 4; threads++) {
+            checkAgainstSerial(TestGraphs.random(150, 450, 1187, true), threads);
+        }
+    }
+
+    private static void checkAgainstSerial(Graph graph, int threads) {
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+        DijkstraAllPairs engine = new DijkstraAllPairs(graph, threads);
+        engine.setProgressListener(ProgressListener.quiet);
+        TestGraphs.assertEquivalent(graph, serial, engine.run());
+    }
+}
@@ -0,0 +1,74 @@
+package com.omgcodes;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Differential tests of incremental updates against a full Graph.floydWarshall() of the changed graph.
+ */
+public class IncrementalUpdaterTest {
+    @Test
+    public void testMatchesRecalculation() {
+        Graph graph = TestGraphs.random(150, 450, 3301, false);
+        RowMajorMatrices matrices = allPairs(graph);
+        FloydWarshallOutput output = new FloydWarshallOutput(graph.indexToId(), matrices);
+
+        // Shorten some existing arcs, and add some new ones, one of them twice.
+        Random rand = new Random(12);
+        ArcList arcs = graph.toArcList();
+        ArcList changes = new ArcList(64);
+        for (int a = 0; a < arcs.size(); a += 20) {
+            changes.add(arcs.originIndex(a), arcs.destinationIndex(a), arcs.length(a) / 2);
+        }
+        for (int c = 0; c < 15; c++) {
+            changes.add(rand.nextInt(graph.size()), rand.nextInt(graph.size()), 0.1 + 5 * rand.nextDouble());
+        }
+        changes.add(changes.originIndex(changes.size() - 1), changes.destinationIndex(changes.size() - 1), 0.05);
+
+        long improvedCells = new IncrementalUpdater(graph, matrices).apply(changes);
+        assertTrue("Improved " + improvedCells, improvedCells > 0);
+
+        Graph updatedGraph = graph.withExtraArcs(changes);
+        FloydWarshallOutput expected = updatedGraph.floydWarshall(ProgressListener.quiet);
+        TestGraphs.assertEquivalent(updatedGraph, expected, output);
+    }
+
+    @Test
+    public void testRejectsLongerArcUnchanged() {
+        Graph graph = TestGraphs.random(60, 200, 877, true);
+        RowMajorMatrices matrices = allPairs(graph);
+
+        // A valid change first, so rejection must come before anything is applied.
+        ArcList arcs = graph.toArcList();
+        ArcList changes = new ArcList(2);
+        changes.add(arcs.originIndex(0), arcs.destinationIndex(0), arcs.length(0) / 2);
+        changes.add(arcs.originIndex(1), arcs.destinationIndex(1), arcs.length(1) + 1);
+
+        IncrementalUpdater updater = new IncrementalUpdater(graph, matrices);
+        final boolean[] beforeUpdateRan = {false};
+        updater.setBeforeUpdate(() -> beforeUpdateRan[0] = true);
+        try {
+            updater.apply(changes);
+            fail("Lengthened arc accepted");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        assertFalse(beforeUpdateRan[0]);
+        TestGraphs.assertIdentical(graph, graph.floydWarshall(ProgressListener.quiet),
+                new FloydWarshallOutput(graph.indexToId(), matrices));
+    }
+
+    // All pairs in a store the updater can change, relaxed in the serial engine's order.
+    private static RowMajorMatrices allPairs(Graph graph) {
+        RowMajorMatrices matrices = RowMajorMatrices.seed(graph);
+        for (int k = 0; k < matrices.size; k++) {
+            matrices.relax(0, matrices.size, 0, matrices.size, k, k + 1);
+        }
+        return matrices;
+    }
+}
@@ -0,0 +1,46 @@
+package com.omgcodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The integer engine against the double engines for whole number lengths: the CSV output must be byte identical.
+ */
+public class IntegerFloydWarshallTest {
+    private File integerFile;
+    private File doubleFile;
+
+    @Before
+    public void createFiles() throws IOException {
+        integerFile = File.createTempFile("fw-integer", ".csv");
+        doubleFile = File.createTempFile("fw-double", ".csv");
+    }
+
+    @After
+    public void deleteFiles() {
+        integerFile.delete();
+        doubleFile.delete();
+    }
+
+    @Test
+    public void testCsvMatchesSerialByteForByte() throws IOException {
+        Graph graph = TestGraphs.random(160, 600, 9161, true);
+        assertTrue(IntegerFloydWarshall.supports(graph));
+        OdPairs pairs = TestGraphs.allPairs(graph);
+
+        IntegerFloydWarshall engine = new IntegerFloydWarshall(graph, 3);
+        engine.setProgressListener(ProgressListener.quiet);
+        Main.saveBestPaths(pairs, engine.run(), integerFile, "csv", 2);
+        Main.saveBestPaths(pairs, graph.floydWarshall(ProgressListener.quiet), doubleFile, "csv", 2);
+
+        assertArrayEquals(Files.readAllBytes(doubleFile.toPath()), Files.readAllBytes(integerFile.toPath()));
+    }
+}
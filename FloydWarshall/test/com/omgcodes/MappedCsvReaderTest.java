@@ -0,0 +1,107 @@
+package com.omgcodes;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * MappedCsvReader against commons-csv's CSVFormat.DEFAULT, which it replaced, and a graph written to CSV and
+ * loaded back through Main.loadGraph().
+ */
+public class MappedCsvReaderTest {
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("fw-mapped-csv", ".csv");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testMatchesCommonsCsv() throws IOException {
+        // Every line end, empty lines, quoted fields with commas, quotes and line ends, and numbers parsed both
+        // directly and through the Double.parseDouble fallback.
+        String[] ids = {"A", "node 7", "\"a,b\"", "\"say \"\"hi\"\"\"", "\"two\nlines\"", "\u00e9t\u00e9"};
+        String[] lengths = {"12", "3.25", "-0.5", "1e3", "0.1", "123456789.123456789", "\"2.5\"", "7.", "0.000001"};
+        String[] lineEnds = {"\n", "\r\n", "\r", "\n\n", "\r\n\r\n"};
+        Random rand = new Random(5);
+        StringBuilder text = new StringBuilder();
+        for (int r = 0; r < 500; r++) {
+            text.append(ids[rand.nextInt(ids.length)]).append(',')
+                    .append(ids[rand.nextInt(ids.length)]).append(',')
+                    .append(lengths[rand.nextInt(lengths.length)])
+                    .append(lineEnds[rand.nextInt(lineEnds.length)]);
+        }
+        // No line end after the last record.
+        text.append("A,B,1.5");
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<CSVRecord> expected = CSVFormat.DEFAULT.parse(new StringReader(text.toString())).getRecords();
+        IdTable table = new IdTable(StandardCharsets.UTF_8);
+        try (MappedCsvReader rd = new MappedCsvReader(file, StandardCharsets.UTF_8)) {
+            for (CSVRecord record : expected) {
+                assertTrue(rd.nextRecord());
+                assertEquals(record.size(), rd.fieldCount());
+                for (int f = 0; f < record.size(); f++) {
+                    assertEquals(record.get(f), rd.getString(f));
+                }
+                assertEquals(Double.doubleToLongBits(Double.parseDouble(record.get(2))),
+                        Double.doubleToLongBits(rd.getDouble(2)));
+
+                // Interned from the mapped bytes, or from the unescaped string if quoted, ids must agree.
+                int origin = rd.intern(0, table);
+                assertEquals(record.get(0), table.getId(origin));
+                assertEquals(origin, table.indexOf(record.get(0)));
+                assertEquals(origin, rd.lookup(0, table));
+            }
+            assertFalse(rd.nextRecord());
+        }
+    }
+
+    @Test
+    public void testGraphRoundTrip() throws IOException {
+        Graph graph = TestGraphs.random(120, 400, 2203, false);
+        String[] ids = graph.indexToId();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < graph.size(); i++) {
+            for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                text.append(ids[i]).append(',').append(ids[graph.targets[a]]).append(',')
+                        .append(graph.weights[a]).append("\r\n");
+            }
+        }
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+
+        // Nodes with no outgoing arcs are interned later, so compare by id rather than index.
+        Graph loaded = Main.loadGraph(file);
+        String[] loadedIds = loaded.indexToId();
+        assertEquals(graph.size(), loaded.size());
+        assertEquals(graph.arcCount(), loaded.arcCount());
+        for (int i = 0; i < loaded.size(); i++) {
+            for (int a = loaded.offsets[i]; a < loaded.offsets[i + 1]; a++) {
+                int original = graph.findArc(graph.getIds().indexOf(loadedIds[i]),
+                        graph.getIds().indexOf(loadedIds[loaded.targets[a]]));
+                assertTrue(original >= 0);
+                assertEquals(Double.doubleToLongBits(graph.weights[original]),
+                        Double.doubleToLongBits(loaded.weights[a]));
+            }
+        }
+    }
+}
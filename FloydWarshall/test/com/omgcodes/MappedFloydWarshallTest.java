@@ -0,0 +1,46 @@
+package com.omgcodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The memory mapped engine against Graph.floydWarshall(): the same comparisons per cell, so identical results.
+ */
+public class MappedFloydWarshallTest {
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("fw-mapped", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testIdenticalToSerialAndReused() throws IOException {
+        Graph graph = TestGraphs.random(150, 550, 8017, true);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+        TestGraphs.assertIdentical(graph, serial, runMapped(graph, 3));
+
+        // The completed file is reused as it is for the same graph.
+        long modified = file.lastModified();
+        TestGraphs.assertIdentical(graph, serial, runMapped(graph, 1));
+        assertEquals(modified, file.lastModified());
+    }
+
+    private FloydWarshallOutput runMapped(Graph graph, int threads) throws IOException {
+        MappedFloydWarshall engine = new MappedFloydWarshall(graph, file, threads);
+        engine.setProgressListener(ProgressListener.quiet);
+        return engine.run();
+    }
+}
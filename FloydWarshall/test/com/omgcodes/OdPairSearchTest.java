@@ -0,0 +1,91 @@
+package com.omgcodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Differential test of the OD pair searches against Graph.floydWarshall(), through the CSV they write.
+ */
+public class OdPairSearchTest {
+    private File file;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("fw-od-search", ".csv");
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testMatchesSerial() throws IOException {
+        Graph graph = TestGraphs.random(200, 520, 6151, true);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+
+        // Random pairs in no particular order, so origins repeat and interleave, and some have no path.
+        Random rand = new Random(97);
+        int count = 5000;
+        int[] origins = new int[count];
+        int[] destinations = new int[count];
+        for (int p = 0; p < count; p++) {
+            origins[p] = rand.nextInt(graph.size());
+            do {
+                destinations[p] = rand.nextInt(graph.size());
+            } while (destinations[p] == origins[p]);
+        }
+        new OdPairSearch(graph, 3).run(new OdPairs(count, origins, destinations), file);
+
+        String[] ids = graph.indexToId();
+        Map<String, Integer> idToIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < ids.length; i++) {
+            idToIndex.put(ids[i], i);
+        }
+
+        // One line per pair with a path, in OD pair order, as Main.saveBestPaths() writes them.
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        int line = 0;
+        for (int p = 0; p < count; p++) {
+            int i = origins[p];
+            int j = destinations[p];
+            double expected = serial.getBestDistance(i, j);
+            if (expected == Double.POSITIVE_INFINITY) {
+                continue;
+            }
+
+            String[] fields = lines.get(line++).split(",", -1);
+            assertEquals(ids[i], fields[0]);
+            assertEquals(ids[j], fields[1]);
+            assertEquals(i + " to " + j, expected, Double.parseDouble(fields[2]), 1e-6);
+
+            // The via nodes join origin to destination by graph arcs, adding up to the distance.
+            double length = 0;
+            int node = i;
+            for (String via : fields[3].split(";")) {
+                if (!via.isEmpty()) {
+                    int next = idToIndex.get(via);
+                    length += TestGraphs.arcLength(graph, node, next);
+                    node = next;
+                }
+            }
+            length += TestGraphs.arcLength(graph, node, j);
+            assertEquals(i + " to " + j, expected, length, 1e-9 * expected);
+        }
+        assertEquals(line, lines.size());
+        assertTrue("Too few pairs with a path: " + line, line > count / 2);
+    }
+}
@@ -0,0 +1,72 @@
+package com.omgcodes;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Differential tests of the row parallel engine against Graph.floydWarshall(), the serial reference.
+ * Every cell sees the same comparisons in the same order, so distances and previous nodes must be identical,
+ * including which of several equally short paths is kept.
+ */
+public class ParallelFloydWarshallTest {
+    @Test
+    public void testIdenticalToSerialWithTies() throws IOException {
+        // Whole number lengths from 1 to 5 give many equally short paths.
+        Graph graph = TestGraphs.random(170, 700, 4021, true);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+
+        for (int threads = 1; threads <= 4; threads++) {
+            TestGraphs.assertIdentical(graph, serial, runParallel(graph, threads, false));
+            TestGraphs.assertIdentical(graph, serial, runParallel(graph, threads, true));
+        }
+    }
+
+    @Test
+    public void testIdenticalToSerial() throws IOException {
+        Graph graph = TestGraphs.random(140, 450, 733, false);
+        FloydWarshallOutput serial = graph.floydWarshall(ProgressListener.quiet);
+
+        TestGraphs.assertIdentical(graph, serial, runParallel(graph, 3, false));
+        TestGraphs.assertIdentical(graph, serial, runParallel(graph, 3, true));
+    }
+
+    @Test
+    public void testBranchFreeCountsImprovements() throws IOException {
+        // The same comparisons improve the same cells, so every kernel reports the serial engine's count.
+        Graph graph = TestGraphs.random(130, 420, 1931, true);
+        long[] improvements = new long[3];
+        graph.floydWarshall(finishedImprovements(improvements, 0));
+        for (int branchFree = 0; branchFree < 2; branchFree++) {
+            ParallelFloydWarshall engine = new ParallelFloydWarshall(graph, 3, branchFree == 1);
+            engine.setProgressListener(finishedImprovements(improvements, 1 + branchFree));
+            engine.run();
+        }
+        assertTrue("Improvements " + improvements[0], improvements[0] > 0);
+        assertEquals(improvements[0], improvements[1]);
+        assertEquals(improvements[0], improvements[2]);
+    }
+
+    // Records the improvements of the finished sample in improvements[index].
+    private static ProgressListener finishedImprovements(long[] improvements, int index) {
+        return new ProgressListener() {
+            @Override
+            public void progress(ProgressSample sample) {
+            }
+
+            @Override
+            public void finished(ProgressSample sample) {
+                improvements[index] = sample.improvements;
+            }
+        };
+    }
+
+    private static FloydWarshallOutput runParallel(Graph graph, int threads, boolean branchFree) throws IOException {
+        ParallelFloydWarshall engine = new ParallelFloydWarshall(graph, threads, branchFree);
+        engine.setProgressListener(ProgressListener.quiet);
+        return engine.run();
+    }
+}
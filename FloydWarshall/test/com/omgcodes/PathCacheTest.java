@@ -0,0 +1,57 @@
+package com.omgcodes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Capacity and lookups of PathCache.
+ */
+public class PathCacheTest {
+    @Test
+    public void testCapacityIsExact() {
+        for (int capacity = 1; capacity <= 100; capacity++) {
+            assertEquals(capacity, new PathCache(capacity).getCapacity());
+        }
+        assertEquals(1000003, new PathCache(1000003).getCapacity());
+    }
+
+    @Test
+    public void testHoldsAtMostCapacity() {
+        final int capacity = 37;
+        PathCache cache = new PathCache(capacity);
+        int[] viaNodes = {5, 4};
+        for (int origin = 0; origin < 100; origin++) {
+            for (int destination = 0; destination < 100; destination++) {
+                cache.put(origin, destination, origin + destination, viaNodes, 2);
+            }
+        }
+
+        int held = 0;
+        for (int origin = 0; origin < 100; origin++) {
+            for (int destination = 0; destination < 100; destination++) {
+                PathCache.CachedPath path = cache.get(origin, destination);
+                if (path != null) {
+                    assertEquals(origin + destination, path.distance, 0.0);
+                    assertEquals(2, path.viaNodes.length);
+                    held++;
+                }
+            }
+        }
+        assertTrue("Holds " + held, (held > 0) && (held <= capacity));
+    }
+
+    @Test
+    public void testNoPathIsCached() {
+        PathCache cache = new PathCache(10);
+        cache.put(1, 2, Double.POSITIVE_INFINITY, new int[0], 0);
+        PathCache.CachedPath path = cache.get(1, 2);
+        assertNotNull(path);
+        assertEquals(Double.POSITIVE_INFINITY, path.distance, 0.0);
+        assertEquals(0, path.viaNodes.length);
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+}
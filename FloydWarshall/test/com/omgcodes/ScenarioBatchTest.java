@@ -0,0 +1,120 @@
+package com.omgcodes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Differential tests of scenario batches against a separate Graph.floydWarshall() per scenario, each saved through
+ * Main.saveBestPaths(), which must give byte identical files.
+ */
+public class ScenarioBatchTest {
+    private static final String[] names = {"am", "pm", "night"};
+
+    private File directory;
+    private Graph graph;
+    private double[][] lengths;
+    private ScenarioWeights weights;
+
+    @Before
+    public void createScenarios() throws IOException {
+        directory = Files.createTempDirectory("fw-scenarios").toFile();
+        graph = TestGraphs.random(110, 380, 907, false);
+
+        // Each scenario changes about a third of the arcs, and leaves the rest at their graph length.
+        Random rand = new Random(3);
+        String[] ids = graph.indexToId();
+        StringBuilder text = new StringBuilder("origin,destination," + String.join(",", names) + "\n");
+        lengths = new double[names.length][];
+        for (int s = 0; s < names.length; s++) {
+            lengths[s] = graph.weights.clone();
+        }
+        for (int i = 0; i < graph.size(); i++) {
+            for (int a = graph.offsets[i]; a < graph.offsets[i + 1]; a++) {
+                if (rand.nextInt(3) == 0) {
+                    text.append(ids[i]).append(',').append(ids[graph.targets[a]]);
+                    for (int s = 0; s < names.length; s++) {
+                        lengths[s][a] = 0.1 + 10 * rand.nextDouble();
+                        text.append(',').append(lengths[s][a]);
+                    }
+                    text.append('\n');
+                }
+            }
+        }
+        File source = new File(directory, "scenarios.csv");
+        Files.write(source.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+        weights = ScenarioWeights.load(source, graph);
+    }
+
+    @After
+    public void deleteDirectory() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void testFilePerScenario() throws IOException {
+        OdPairs pairs = TestGraphs.allPairs(graph);
+        File outputPath = new File(directory, "paths.csv");
+        new ScenarioBatch(weights, ScenarioBatchTest::runParallel, 4, 2).run(pairs, outputPath, "csv", false);
+
+        for (int s = 0; s < names.length; s++) {
+            File scenarioFile = new File(directory, "paths." + names[s] + ".csv");
+            assertArrayEquals(names[s], expected(pairs, s), Files.readAllBytes(scenarioFile.toPath()));
+        }
+        assertFalse(outputPath.exists());
+    }
+
+    @Test
+    public void testScenarioColumn() throws IOException {
+        OdPairs pairs = TestGraphs.allPairs(graph);
+        File outputPath = new File(directory, "paths.csv");
+        new ScenarioBatch(weights, ScenarioBatchTest::runParallel, 3, 3).run(pairs, outputPath, "csv", true);
+
+        // Every scenario's lines in scenario order, each with the scenario name first. No parts are left behind.
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (int s = 0; s < names.length; s++) {
+            for (String line : new String(expected(pairs, s), StandardCharsets.UTF_8).split("(?<=\n)")) {
+                joined.write((names[s] + "," + line).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        assertArrayEquals(joined.toByteArray(), Files.readAllBytes(outputPath.toPath()));
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void testScenarioPath() {
+        assertEquals(new File("out", "paths.am.csv"), ScenarioBatch.scenarioPath(new File("out", "paths.csv"), "am"));
+        assertEquals(new File("out", "paths.am"), ScenarioBatch.scenarioPath(new File("out", "paths"), "am"));
+        assertEquals(new File(".paths.am"), ScenarioBatch.scenarioPath(new File(".paths"), "am"));
+    }
+
+    // Scenario s on its own, through the serial engine.
+    private byte[] expected(OdPairs pairs, int s) throws IOException {
+        File file = new File(directory, "expected.csv");
+        Graph scenarioGraph = graph.withLengths(lengths[s]);
+        Main.saveBestPaths(pairs, scenarioGraph.floydWarshall(ProgressListener.quiet), file, "csv", 2);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        file.delete();
+        return bytes;
+    }
+
+    private static FloydWarshallOutput runParallel(Graph scenarioGraph, int threads) throws IOException {
+        ParallelFloydWarshall engine = new ParallelFloydWarshall(scenarioGraph, threads, false);
+        engine.setProgressListener(ProgressListener.quiet);
+        return engine.run();
+    }
+}
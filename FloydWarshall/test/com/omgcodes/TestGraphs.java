@@ -0,0 +1,99 @@
+package com.omgcodes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Small random graphs, and checks on all pairs results, shared by the engine tests.
+ */
+class TestGraphs {
+    // size nodes "N0" ..., with arcCount random arcs. Whole number lengths from 1 to 5 give many equally short paths.
+    static Graph random(int size, int arcCount, long seed, boolean wholeNumbers) {
+        Random rand = new Random(seed);
+        IdTable ids = new IdTable(StandardCharsets.UTF_8);
+        for (int i = 0; i < size; i++) {
+            ids.intern("N" + i);
+        }
+
+        ArcList arcs = new ArcList(arcCount);
+        for (int a = 0; a < arcCount; a++) {
+            double length = wholeNumbers ? 1 + rand.nextInt(5) : 0.1 + 10 * rand.nextDouble();
+            arcs.add(rand.nextInt(size), rand.nextInt(size), length);
+        }
+        return Graph.build(ids, arcs);
+    }
+
+    // Every ordered pair of different nodes, origin major.
+    static OdPairs allPairs(Graph graph) {
+        int size = graph.size();
+        int count = size * (size - 1);
+        int[] origins = new int[count];
+        int[] destinations = new int[count];
+        int p = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (i != j) {
+                    origins[p] = i;
+                    destinations[p] = j;
+                    p++;
+                }
+            }
+        }
+        return new OdPairs(count, origins, destinations);
+    }
+
+    // Bit for bit equal distances, and equal previous nodes, for every pair.
+    static void assertIdentical(Graph graph, FloydWarshallOutput expected, FloydWarshallOutput actual) {
+        for (int i = 0; i < graph.size(); i++) {
+            for (int j = 0; j < graph.size(); j++) {
+                String pair = i + " to " + j;
+                assertEquals(pair, Double.doubleToLongBits(expected.getBestDistance(i, j)),
+                        Double.doubleToLongBits(actual.getBestDistance(i, j)));
+                assertEquals(pair, expected.getPreviousNodeIndex(i, j), actual.getPreviousNodeIndex(i, j));
+            }
+        }
+    }
+
+    // Equal distances up to rounding for every pair, and paths that match them. Where paths tie, the two results
+    // may keep different ones.
+    static void assertEquivalent(Graph graph, FloydWarshallOutput expected, FloydWarshallOutput actual) {
+        for (int i = 0; i < graph.size(); i++) {
+            for (int j = 0; j < graph.size(); j++) {
+                double distance = expected.getBestDistance(i, j);
+                assertEquals(i + " to " + j, distance, actual.getBestDistance(i, j), 1e-9 * distance);
+                if (i != j) {
+                    assertPathMatchesDistance(graph, actual, i, j);
+                }
+            }
+        }
+    }
+
+    // The path previousNodeIndex gives from i to j is made of graph arcs, and is as long as the best distance.
+    static void assertPathMatchesDistance(Graph graph, FloydWarshallOutput output, int i, int j) {
+        double distance = output.getBestDistance(i, j);
+        if (distance == Double.POSITIVE_INFINITY) {
+            return;
+        }
+
+        double length = 0;
+        int node = j;
+        for (int steps = 0; output.getPreviousNodeIndex(i, node) != FloydWarshallOutput.nullNodeIndex; steps++) {
+            assertTrue("Path from " + i + " to " + j + " does not end", steps < graph.size());
+            int previous = output.getPreviousNodeIndex(i, node);
+            length += arcLength(graph, previous, node);
+            node = previous;
+        }
+        length += arcLength(graph, i, node);
+        assertEquals(distance, length, 1e-9 * distance);
+    }
+
+    // Length of the arc from origin to destination, which must exist.
+    static double arcLength(Graph graph, int origin, int destination) {
+        int arc = graph.findArc(origin, destination);
+        assertTrue("No arc from " + origin + " to " + destination, arc >= 0);
+        return graph.weights[arc];
+    }
+}